@@ -9,6 +9,10 @@ COLLATE utf8mb4_unicode_ci;
 -- Usar la base de datos
 USE drogueria_db;
 
+-- el índice fulltext ngram se crea sin stopwords: con la lista por defecto se descartan
+-- los tokens que contienen "a", "i", "de"... y la búsqueda por nombre pierde filas
+SET SESSION innodb_ft_enable_stopword = OFF;
+
 -- Crear la tabla de medicamentos
 CREATE TABLE IF NOT EXISTS medicamentos (
     id INT AUTO_INCREMENT PRIMARY KEY,
@@ -17,20 +21,25 @@ CREATE TABLE IF NOT EXISTS medicamentos (
     cantidad INT NOT NULL,
     distribuidor VARCHAR(100) NOT NULL,
     sucursales TEXT NOT NULL,
+    sucursales_mask TINYINT UNSIGNED NOT NULL DEFAULT 0 COMMENT 'mascara calculada',
     fecha TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     INDEX idx_nombre (nombre),
     INDEX idx_tipo (tipo),
     INDEX idx_distribuidor (distribuidor),
-    INDEX idx_fecha (fecha)
+    INDEX idx_fecha (fecha),
+    INDEX idx_sucursales (sucursales_mask),
+    FULLTEXT INDEX ft_nombre (nombre) WITH PARSER ngram COMMENT 'ngram sin stopwords'
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+SET SESSION innodb_ft_enable_stopword = DEFAULT;
+
 -- Insertar algunos datos de ejemplo
-INSERT INTO medicamentos (nombre, tipo, cantidad, distribuidor, sucursales) VALUES
-('Paracetamol', 'Analgésico', 100, 'Cofarma', 'Principal, Secundaria'),
-('Ibuprofeno', 'Analgésico', 75, 'Empsephar', 'Principal'),
-('Omeprazol', 'Antiácido', 50, 'Cemefar', 'Secundaria'),
-('Amoxicilina', 'Antibiótico', 30, 'Cofarma', 'Principal, Secundaria'),
-('Loratadina', 'Antialérgico', 60, 'Empsephar', 'Principal');
+INSERT INTO medicamentos (nombre, tipo, cantidad, distribuidor, sucursales, sucursales_mask) VALUES
+('Paracetamol', 'Analgésico', 100, 'Cofarma', 'Principal, Secundaria', 3),
+('Ibuprofeno', 'Analgésico', 75, 'Empsephar', 'Principal', 1),
+('Omeprazol', 'Antiácido', 50, 'Cemefar', 'Secundaria', 2),
+('Amoxicilina', 'Antibiótico', 30, 'Cofarma', 'Principal, Secundaria', 3),
+('Loratadina', 'Antialérgico', 60, 'Empsephar', 'Principal', 1);
 
 -- Mostrar los datos insertados
 SELECT * FROM medicamentos;
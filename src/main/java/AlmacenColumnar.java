@@ -0,0 +1,348 @@
+import java.util.*;
+
+/**
+ * almacén en columnas (struct of arrays) para análisis sobre todo el historial de pedidos
+ * cada campo vive en su propio arreglo primitivo en lugar de un objeto Medicamento por fila:
+ *   id, nombre (índice a un pool de nombres), cantidad: int[]   fecha: long[] (ver FechaRegistro)
+ *   tipo y distribuidor: códigos de una paleta propia (byte hasta 256 valores distintos, char hasta 65536)
+ *   sucursales: máscara de bits (ver Sucursales) en un byte
+ * una fila ocupa unos 23 bytes y los recorridos son bucles planos sobre arreglos contiguos, que el jit
+ * puede desenrollar y vectorizar; Medicamento se arma solo al pedir una fila con obtener
+ * no es seguro entre hilos: se llena una vez y después se consulta
+ */
+public class AlmacenColumnar {
+
+    /**
+     * filas seleccionadas por un filtro, en orden ascendente de posición
+     */
+    public static final class Seleccion {
+        private final int[] filas;
+        private final int tamano;
+
+        private Seleccion(int[] filas, int tamano) {
+            this.filas = filas;
+            this.tamano = tamano;
+        }
+
+        public int tamano() { return tamano; }
+        public int fila(int i) { return filas[i]; }
+    }
+
+    /**
+     * criterios de filtrado; los que quedan sin indicar no restringen
+     * tipo y distribuidor se comparan sin distinguir mayúsculas, como en el panel y en mysql
+     */
+    public static final class Filtro {
+        private String tipo;
+        private String distribuidor;
+        private int sucursales;                     // 0 = todas
+        private long desde = Long.MIN_VALUE;        // fecha inicial incluida
+        private long hasta = Long.MAX_VALUE;        // fecha final incluida
+        private int cantidadMinima = Integer.MIN_VALUE;
+        private int cantidadMaxima = Integer.MAX_VALUE;
+
+        public Filtro tipo(String tipo) { this.tipo = tipo; return this; }
+        public Filtro distribuidor(String distribuidor) { this.distribuidor = distribuidor; return this; }
+        public Filtro sucursales(int mascara) { this.sucursales = mascara; return this; }
+        public Filtro desde(long fechaMillis) { this.desde = fechaMillis; return this; }
+        public Filtro hasta(long fechaMillis) { this.hasta = fechaMillis; return this; }
+        public Filtro cantidadEntre(int minima, int maxima) {
+            this.cantidadMinima = minima;
+            this.cantidadMaxima = maxima;
+            return this;
+        }
+    }
+
+    // códigos por fila de un campo con pocos valores distintos; empieza en byte y se ensancha si hace falta
+    private static final class ColumnaCodigos {
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private final List<String> valores = new ArrayList<>();
+        private byte[] bytes;
+        private char[] anchos;      // null mientras la paleta quepa en un byte
+
+        ColumnaCodigos(int capacidad) {
+            bytes = new byte[capacidad];
+        }
+
+        int codigo(String valor) {
+            Integer codigo = codigos.get(valor);
+            if (codigo == null) {
+                codigo = valores.size();
+                if (codigo > Character.MAX_VALUE) {
+                    throw new IllegalStateException("demasiados valores distintos en una columna codificada");
+                }
+                codigos.put(valor, codigo);
+                valores.add(valor);
+                if (codigo == 256) {
+                    ensanchar();
+                }
+            }
+            return codigo;
+        }
+
+        private void ensanchar() {
+            anchos = new char[bytes.length];
+            for (int i = 0; i < bytes.length; i++) {
+                anchos[i] = (char) (bytes[i] & 0xFF);
+            }
+            bytes = null;
+        }
+
+        void poner(int fila, int codigo) {
+            if (anchos != null) {
+                anchos[fila] = (char) codigo;
+            } else {
+                bytes[fila] = (byte) codigo;
+            }
+        }
+
+        int obtener(int fila) {
+            return anchos != null ? anchos[fila] : bytes[fila] & 0xFF;
+        }
+
+        void redimensionar(int capacidad) {
+            if (anchos != null) {
+                anchos = Arrays.copyOf(anchos, capacidad);
+            } else {
+                bytes = Arrays.copyOf(bytes, capacidad);
+            }
+        }
+
+        String valor(int codigo) {
+            return valores.get(codigo);
+        }
+
+        int paleta() {
+            return valores.size();
+        }
+
+        // códigos cuyo texto es igual al dado sin distinguir mayúsculas; null = no filtrar
+        boolean[] aceptados(String valor) {
+            if (valor == null) {
+                return null;
+            }
+            boolean[] aceptados = new boolean[valores.size()];
+            for (int codigo = 0; codigo < valores.size(); codigo++) {
+                aceptados[codigo] = valor.equalsIgnoreCase(valores.get(codigo));
+            }
+            return aceptados;
+        }
+
+        long bytesPorFila() {
+            return anchos != null ? Character.BYTES : Byte.BYTES;
+        }
+    }
+
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    private int[] ids;
+    private int[] nombres;
+    private int[] cantidades;
+    private long[] fechas;
+    private byte[] sucursales;
+    private final ColumnaCodigos tipos;
+    private final ColumnaCodigos distribuidores;
+
+    // pool de nombres: cada nombre distinto se guarda una sola vez
+    private final Map<String, Integer> indiceNombres = new HashMap<>();
+    private final List<String> poolNombres = new ArrayList<>();
+
+    private int tamano = 0;
+
+    public AlmacenColumnar() {
+        this(CAPACIDAD_INICIAL);
+    }
+
+    /**
+     * @param capacidad filas reservadas de entrada (se amplía sola si hace falta)
+     */
+    public AlmacenColumnar(int capacidad) {
+        capacidad = Math.max(capacidad, 16);
+        ids = new int[capacidad];
+        nombres = new int[capacidad];
+        cantidades = new int[capacidad];
+        fechas = new long[capacidad];
+        sucursales = new byte[capacidad];
+        tipos = new ColumnaCodigos(capacidad);
+        distribuidores = new ColumnaCodigos(capacidad);
+    }
+
+    /**
+     * carga todos los registros de cualquiera de los almacenamientos sin armar una lista intermedia
+     */
+    public static AlmacenColumnar desde(RepositorioMedicamentos repositorio) {
+        AlmacenColumnar almacen = new AlmacenColumnar(Math.max(repositorio.obtenerTotalMedicamentos(), CAPACIDAD_INICIAL));
+        long inicio = System.nanoTime();
+        int leidos = repositorio.recorrerMedicamentos(almacen::agregar);
+        System.out.println("[Columnar] " + leidos + " registros en columnas en "
+                + (System.nanoTime() - inicio) / 1_000_000 + " ms (" + almacen.bytesEstimados() / 1024 + " KB)");
+        return almacen;
+    }
+
+    public void agregar(Medicamento med) {
+        if (tamano == ids.length) {
+            redimensionar(tamano + (tamano >> 1));
+        }
+        ids[tamano] = med.getId();
+        nombres[tamano] = indiceNombres.computeIfAbsent(med.getNombre(), nombre -> {
+            poolNombres.add(nombre);
+            return poolNombres.size() - 1;
+        });
+        cantidades[tamano] = med.getCantidad();
+        fechas[tamano] = med.getFechaMillis();
+        // las sucursales conocidas caben en un byte (ver Sucursales)
+        sucursales[tamano] = (byte) med.getMascaraSucursales();
+        tipos.poner(tamano, tipos.codigo(med.getTipo()));
+        distribuidores.poner(tamano, distribuidores.codigo(med.getDistribuidor()));
+        tamano++;
+    }
+
+    private void redimensionar(int capacidad) {
+        ids = Arrays.copyOf(ids, capacidad);
+        nombres = Arrays.copyOf(nombres, capacidad);
+        cantidades = Arrays.copyOf(cantidades, capacidad);
+        fechas = Arrays.copyOf(fechas, capacidad);
+        sucursales = Arrays.copyOf(sucursales, capacidad);
+        tipos.redimensionar(capacidad);
+        distribuidores.redimensionar(capacidad);
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    /**
+     * arma el Medicamento de una fila; las sucursales salen de la máscara, así que solo se
+     * conservan las sucursales conocidas
+     */
+    public Medicamento obtener(int fila) {
+        Objects.checkIndex(fila, tamano);
+        return new Medicamento(ids[fila], poolNombres.get(nombres[fila]), tipos.valor(tipos.obtener(fila)),
+                cantidades[fila], distribuidores.valor(distribuidores.obtener(fila)),
+                Sucursales.lista(sucursales[fila]), fechas[fila]);
+    }
+
+    // ===== recorrido y filtrado =====
+
+    /**
+     * todas las filas
+     */
+    public Seleccion todas() {
+        int[] filas = new int[tamano];
+        for (int i = 0; i < tamano; i++) {
+            filas[i] = i;
+        }
+        return new Seleccion(filas, tamano);
+    }
+
+    /**
+     * filas que cumplen todos los criterios; cada criterio es una comparación de enteros sobre
+     * su columna (los textos se traducen una sola vez a los códigos aceptados)
+     */
+    public Seleccion filtrar(Filtro filtro) {
+        boolean[] tiposAceptados = tipos.aceptados(filtro.tipo);
+        boolean[] distribuidoresAceptados = distribuidores.aceptados(filtro.distribuidor);
+        int[] filas = new int[tamano];
+        int seleccionadas = 0;
+        for (int i = 0; i < tamano; i++) {
+            long fecha = fechas[i];
+            int cantidad = cantidades[i];
+            if (fecha >= filtro.desde && fecha <= filtro.hasta
+                    && cantidad >= filtro.cantidadMinima && cantidad <= filtro.cantidadMaxima
+                    && (filtro.sucursales == 0 || (sucursales[i] & filtro.sucursales) != 0)
+                    && (tiposAceptados == null || tiposAceptados[tipos.obtener(i)])
+                    && (distribuidoresAceptados == null || distribuidoresAceptados[distribuidores.obtener(i)])) {
+                filas[seleccionadas++] = i;
+            }
+        }
+        return new Seleccion(filas, seleccionadas);
+    }
+
+    // ===== agregados =====
+
+    /**
+     * suma de cantidad de todas las filas: un bucle plano sobre int[] que el jit vectoriza
+     */
+    public long totalUnidades() {
+        long total = 0;
+        for (int i = 0; i < tamano; i++) {
+            total += cantidades[i];
+        }
+        return total;
+    }
+
+    public long totalUnidades(Seleccion seleccion) {
+        long total = 0;
+        for (int i = 0; i < seleccion.tamano; i++) {
+            total += cantidades[seleccion.filas[i]];
+        }
+        return total;
+    }
+
+    /**
+     * unidades por tipo, agrupando sin distinguir mayúsculas
+     */
+    public Map<String, Long> unidadesPorTipo(Seleccion seleccion) {
+        return agrupar(tipos, seleccion);
+    }
+
+    /**
+     * unidades por distribuidor, agrupando sin distinguir mayúsculas
+     */
+    public Map<String, Long> unidadesPorDistribuidor(Seleccion seleccion) {
+        return agrupar(distribuidores, seleccion);
+    }
+
+    /**
+     * unidades por sucursal; un registro suma en cada una de sus sucursales
+     */
+    public Map<String, Long> unidadesPorSucursal(Seleccion seleccion) {
+        // primero por máscara (pocas combinaciones), después se reparte en sucursales
+        long[] porMascara = new long[256];
+        for (int i = 0; i < seleccion.tamano; i++) {
+            int fila = seleccion.filas[i];
+            porMascara[sucursales[fila] & 0xFF] += cantidades[fila];
+        }
+        Map<String, Long> resultado = new LinkedHashMap<>();
+        for (String sucursal : Sucursales.todas()) {
+            int bit = Sucursales.bit(sucursal);
+            long unidades = 0;
+            for (int mascara = 0; mascara < porMascara.length; mascara++) {
+                if ((mascara & bit) != 0) {
+                    unidades += porMascara[mascara];
+                }
+            }
+            resultado.put(sucursal, unidades);
+        }
+        return resultado;
+    }
+
+    // acumula por código en un arreglo del tamaño de la paleta y solo al final pasa a texto
+    private Map<String, Long> agrupar(ColumnaCodigos columna, Seleccion seleccion) {
+        long[] porCodigo = new long[columna.paleta()];
+        boolean[] presente = new boolean[columna.paleta()];
+        for (int i = 0; i < seleccion.tamano; i++) {
+            int fila = seleccion.filas[i];
+            int codigo = columna.obtener(fila);
+            porCodigo[codigo] += cantidades[fila];
+            presente[codigo] = true;
+        }
+        Map<String, Long> resultado = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int codigo = 0; codigo < porCodigo.length; codigo++) {
+            if (presente[codigo]) {
+                String valor = columna.valor(codigo);
+                resultado.merge(valor == null ? "" : valor, porCodigo[codigo], Long::sum);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * memoria aproximada de las columnas (capacidad reservada, sin el pool de nombres)
+     */
+    public long bytesEstimados() {
+        long porFila = 3L * Integer.BYTES + Long.BYTES + Byte.BYTES
+                + tipos.bytesPorFila() + distribuidores.bytesPorFila();
+        return porFila * ids.length;
+    }
+}
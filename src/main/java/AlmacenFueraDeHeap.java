@@ -0,0 +1,257 @@
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * lista de medicamentos guardada fuera del heap, en segmentos de ByteBuffer.allocateDirect
+ * cada registro ocupa un hueco de ancho fijo:
+ *   id:int nombre:int tipo:int cantidad:int distribuidor:int sucursales:int fecha:long   (32 bytes)
+ * nombre y sucursales son índices a pools en el heap (crecen con la variedad de nombres y de
+ * combinaciones de sucursales, no con la cantidad de registros); tipo y distribuidor son los
+ * códigos de DiccionarioValores
+ * la posición de un registro se calcula sin tablas: segmento = hueco / HUECOS_POR_SEGMENTO y
+ * desplazamiento = (hueco % HUECOS_POR_SEGMENTO) * BYTES_HUECO; los huecos forman dos pilas
+ * (las filas agregadas al inicio y las agregadas al final), así agregar por cualquiera de
+ * los dos extremos no mueve los demás registros
+ * get arma un Medicamento nuevo en cada llamada: la tabla solo pide las filas visibles
+ * quitar una fila suelta corre los huecos siguientes (O(n), como ArrayList.remove); las bajas en
+ * tanda van por quitarFilas, que compacta en una sola pasada
+ * no es segura entre hilos (igual que ArrayList); los segmentos que se sueltan (clear, pilas que
+ * se achican) devuelven su memoria directa cuando el recolector los descarta, no en el momento
+ */
+public class AlmacenFueraDeHeap extends AbstractList<Medicamento> implements RandomAccess {
+    static final int BYTES_HUECO = 32;
+    private static final int HUECOS_POR_SEGMENTO = 1 << 15;    // 1 MB por segmento
+
+    private static final int ID = 0;
+    private static final int NOMBRE = 4;
+    private static final int TIPO = 8;
+    private static final int CANTIDAD = 12;
+    private static final int DISTRIBUIDOR = 16;
+    private static final int SUCURSALES = 20;
+    private static final int FECHA = 24;
+
+    // huecos contiguos repartidos en segmentos que se piden a medida que la pila crece
+    private static final class Pila {
+        final List<ByteBuffer> segmentos = new ArrayList<>();
+        int tamano;
+
+        ByteBuffer segmento(int hueco) {
+            return segmentos.get(hueco / HUECOS_POR_SEGMENTO);
+        }
+
+        int desplazamiento(int hueco) {
+            return (hueco % HUECOS_POR_SEGMENTO) * BYTES_HUECO;
+        }
+
+        int nuevoHueco() {
+            if (tamano == segmentos.size() * HUECOS_POR_SEGMENTO) {
+                segmentos.add(ByteBuffer.allocateDirect(HUECOS_POR_SEGMENTO * BYTES_HUECO));
+            }
+            return tamano++;
+        }
+
+        // corre una posición hacia abajo los huecos que siguen a "hueco" y descarta el último
+        void quitar(int hueco) {
+            for (int i = hueco; i < tamano - 1; i++) {
+                copiar(i + 1, i);
+            }
+            tamano--;
+            soltarSobrantes();
+        }
+
+        // quita los huecos marcados en una sola pasada: cada hueco que queda se copia a lo sumo una vez
+        void quitar(BitSet huecos) {
+            int destino = huecos.nextSetBit(0);
+            if (destino < 0 || destino >= tamano) {
+                return;
+            }
+            for (int origen = destino + 1; origen < tamano; origen++) {
+                if (!huecos.get(origen)) {
+                    copiar(origen, destino++);
+                }
+            }
+            tamano = destino;
+            soltarSobrantes();
+        }
+
+        private void copiar(int origen, int destino) {
+            ByteBuffer desdeSegmento = segmento(origen);
+            ByteBuffer haciaSegmento = segmento(destino);
+            int desde = desplazamiento(origen);
+            int hasta = desplazamiento(destino);
+            for (int b = 0; b < BYTES_HUECO; b += Long.BYTES) {
+                haciaSegmento.putLong(hasta + b, desdeSegmento.getLong(desde + b));
+            }
+        }
+
+        // suelta los segmentos que quedaron vacíos (su memoria vuelve cuando el recolector los descarta)
+        private void soltarSobrantes() {
+            int necesarios = (tamano + HUECOS_POR_SEGMENTO - 1) / HUECOS_POR_SEGMENTO;
+            while (segmentos.size() > necesarios) {
+                segmentos.remove(segmentos.size() - 1);
+            }
+        }
+
+        void limpiar() {
+            segmentos.clear();
+            tamano = 0;
+        }
+    }
+
+    private final Pila inicio = new Pila();   // el último hueco de esta pila es la fila 0
+    private final Pila fin = new Pila();
+
+    private final Map<String, Integer> indiceNombres = new HashMap<>();
+    private final List<String> nombres = new ArrayList<>();
+    private final Map<List<String>, Integer> indiceSucursales = new HashMap<>();
+    private final List<List<String>> sucursales = new ArrayList<>();
+
+    @Override
+    public int size() {
+        return inicio.tamano + fin.tamano;
+    }
+
+    @Override
+    public Medicamento get(int fila) {
+        Objects.checkIndex(fila, size());
+        Pila pila = pila(fila);
+        int hueco = hueco(fila);
+        ByteBuffer segmento = pila.segmento(hueco);
+        int base = pila.desplazamiento(hueco);
+        return new Medicamento(segmento.getInt(base + ID), nombres.get(segmento.getInt(base + NOMBRE)),
+                DiccionarioValores.TIPOS.valor(segmento.getInt(base + TIPO)), segmento.getInt(base + CANTIDAD),
+                DiccionarioValores.DISTRIBUIDORES.valor(segmento.getInt(base + DISTRIBUIDOR)),
+                sucursales.get(segmento.getInt(base + SUCURSALES)), segmento.getLong(base + FECHA));
+    }
+
+    /**
+     * id de la fila sin armar el Medicamento
+     */
+    public int getId(int fila) {
+        Objects.checkIndex(fila, size());
+        Pila pila = pila(fila);
+        int hueco = hueco(fila);
+        return pila.segmento(hueco).getInt(pila.desplazamiento(hueco) + ID);
+    }
+
+    @Override
+    public boolean add(Medicamento med) {
+        escribir(fin, fin.nuevoHueco(), med);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * solo por los extremos, que no mueven los demás registros
+     * @throws UnsupportedOperationException si la fila no es la primera ni la posición final
+     */
+    @Override
+    public void add(int fila, Medicamento med) {
+        if (fila == size()) {
+            add(med);
+        } else if (fila == 0) {
+            escribir(inicio, inicio.nuevoHueco(), med);
+            modCount++;
+        } else {
+            throw new UnsupportedOperationException("solo se agrega al inicio o al final");
+        }
+    }
+
+    @Override
+    public boolean addAll(int fila, Collection<? extends Medicamento> medicamentos) {
+        if (fila != 0 || isEmpty()) {
+            return super.addAll(fila, medicamentos);
+        }
+        // al inicio: se apilan al revés para que el primero de la colección quede como fila 0
+        List<Medicamento> alReves = new ArrayList<>(medicamentos);
+        Collections.reverse(alReves);
+        for (Medicamento med : alReves) {
+            escribir(inicio, inicio.nuevoHueco(), med);
+        }
+        modCount++;
+        return !alReves.isEmpty();
+    }
+
+    /**
+     * reescribe el hueco de la fila en su lugar
+     */
+    @Override
+    public Medicamento set(int fila, Medicamento med) {
+        Medicamento anterior = get(fila);
+        escribir(pila(fila), hueco(fila), med);
+        return anterior;
+    }
+
+    @Override
+    public Medicamento remove(int fila) {
+        Medicamento med = get(fila);
+        pila(fila).quitar(hueco(fila));
+        modCount++;
+        return med;
+    }
+
+    /**
+     * quita de una vez las filas marcadas (posiciones actuales), en una pasada por pila
+     */
+    public void quitarFilas(BitSet filasQuitadas) {
+        if (filasQuitadas.isEmpty()) {
+            return;
+        }
+        BitSet huecosInicio = new BitSet();
+        BitSet huecosFin = new BitSet();
+        for (int fila = filasQuitadas.nextSetBit(0); fila >= 0 && fila < size(); fila = filasQuitadas.nextSetBit(fila + 1)) {
+            (fila < inicio.tamano ? huecosInicio : huecosFin).set(hueco(fila));
+        }
+        inicio.quitar(huecosInicio);
+        fin.quitar(huecosFin);
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        inicio.limpiar();
+        fin.limpiar();
+        indiceNombres.clear();
+        nombres.clear();
+        indiceSucursales.clear();
+        sucursales.clear();
+        modCount++;
+    }
+
+    /**
+     * memoria directa reservada por los segmentos
+     */
+    public long bytesFueraDeHeap() {
+        return (long) (inicio.segmentos.size() + fin.segmentos.size()) * HUECOS_POR_SEGMENTO * BYTES_HUECO;
+    }
+
+    private Pila pila(int fila) {
+        return fila < inicio.tamano ? inicio : fin;
+    }
+
+    private int hueco(int fila) {
+        return fila < inicio.tamano ? inicio.tamano - 1 - fila : fila - inicio.tamano;
+    }
+
+    private void escribir(Pila pila, int hueco, Medicamento med) {
+        ByteBuffer segmento = pila.segmento(hueco);
+        int base = pila.desplazamiento(hueco);
+        segmento.putInt(base + ID, med.getId());
+        segmento.putInt(base + NOMBRE, indice(med.getNombre(), indiceNombres, nombres));
+        segmento.putInt(base + TIPO, med.getCodigoTipo());
+        segmento.putInt(base + CANTIDAD, med.getCantidad());
+        segmento.putInt(base + DISTRIBUIDOR, med.getCodigoDistribuidor());
+        segmento.putInt(base + SUCURSALES, indice(med.getSucursales(), indiceSucursales, sucursales));
+        segmento.putLong(base + FECHA, med.getFechaMillis());
+    }
+
+    private static <T> int indice(T valor, Map<T, Integer> indices, List<T> pool) {
+        Integer indice = indices.get(valor);
+        if (indice == null) {
+            indice = pool.size();
+            indices.put(valor, indice);
+            pool.add(valor);
+        }
+        return indice;
+    }
+}
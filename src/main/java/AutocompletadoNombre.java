@@ -0,0 +1,163 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * lista de sugerencias bajo un campo de texto, alimentada por el catálogo de medicamentos
+ * flechas para moverse, enter o clic para elegir, escape para cerrar; la lista no toma el foco,
+ * así se puede seguir escribiendo con ella abierta
+ */
+public class AutocompletadoNombre {
+    private static final int MAX_SUGERENCIAS = 10;
+
+    private final JTextField campo;
+    private final CatalogoMedicamentos catalogo;
+    private final Consumer<CatalogoMedicamentos.Entrada> alElegir;
+    private final JPopupMenu popup = new JPopupMenu();
+    private final DefaultListModel<CatalogoMedicamentos.Entrada> sugerencias = new DefaultListModel<>();
+    private final JList<CatalogoMedicamentos.Entrada> lista = new JList<>(sugerencias);
+    private boolean eligiendo = false;   // el texto lo pone la propia elección: no volver a sugerir
+
+    /**
+     * @param campo campo donde se escribe el nombre
+     * @param catalogo índice de nombres conocidos
+     * @param alElegir acción adicional al elegir una sugerencia (el nombre ya quedó en el campo)
+     */
+    public AutocompletadoNombre(JTextField campo, CatalogoMedicamentos catalogo,
+                                Consumer<CatalogoMedicamentos.Entrada> alElegir) {
+        this.campo = campo;
+        this.catalogo = catalogo;
+        this.alElegir = alElegir;
+
+        lista.setFocusable(false);
+        lista.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        lista.setBackground(EstiloModerno.FONDO_SECUNDARIO);
+        lista.setForeground(EstiloModerno.TEXTO_PRINCIPAL);
+        lista.setSelectionBackground(EstiloModerno.VERDE_PRINCIPAL);
+        lista.setSelectionForeground(EstiloModerno.TEXTO_PRINCIPAL);
+        lista.setFont(EstiloModerno.FUENTE_NORMAL);
+
+        JScrollPane scroll = new JScrollPane(lista);
+        scroll.setBorder(BorderFactory.createLineBorder(EstiloModerno.BORDE_ACTIVO));
+        popup.setFocusable(false);
+        popup.setBorder(BorderFactory.createEmptyBorder());
+        popup.add(scroll);
+
+        configurarEventos();
+    }
+
+    private void configurarEventos() {
+        campo.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { programarActualizacion(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { programarActualizacion(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { programarActualizacion(); }
+        });
+
+        campo.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) {
+                    return;
+                }
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        mover(1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        mover(-1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        if (lista.getSelectedIndex() >= 0) {
+                            elegir(lista.getSelectedValue());
+                            e.consume();
+                        }
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        popup.setVisible(false);
+                        e.consume();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+
+        campo.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                popup.setVisible(false);
+            }
+        });
+
+        lista.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int indice = lista.locationToIndex(e.getPoint());
+                if (indice >= 0) {
+                    elegir(sugerencias.get(indice));
+                }
+            }
+        });
+    }
+
+    // los listeners del documento no deben tocar la interfaz mientras se notifica el cambio
+    private void programarActualizacion() {
+        if (!eligiendo) {
+            SwingUtilities.invokeLater(this::actualizar);
+        }
+    }
+
+    private void actualizar() {
+        if (!campo.isShowing() || !campo.isFocusOwner()) {
+            return;
+        }
+        String texto = campo.getText();
+        List<CatalogoMedicamentos.Entrada> encontradas = catalogo.sugerir(texto, MAX_SUGERENCIAS);
+        // nada que sugerir, o el campo ya tiene exactamente la única sugerencia
+        if (encontradas.isEmpty() || (encontradas.size() == 1
+                && encontradas.get(0).getNombre().equals(texto.trim()))) {
+            popup.setVisible(false);
+            return;
+        }
+
+        sugerencias.clear();
+        for (CatalogoMedicamentos.Entrada entrada : encontradas) {
+            sugerencias.addElement(entrada);
+        }
+        lista.setVisibleRowCount(encontradas.size());
+        popup.setPopupSize(new Dimension(campo.getWidth(), lista.getPreferredScrollableViewportSize().height + 4));
+        if (popup.isVisible()) {
+            popup.pack();
+        } else {
+            popup.show(campo, 0, campo.getHeight());
+        }
+    }
+
+    private void mover(int paso) {
+        int indice = lista.getSelectedIndex() + paso;
+        if (indice >= 0 && indice < sugerencias.size()) {
+            lista.setSelectedIndex(indice);
+            lista.ensureIndexIsVisible(indice);
+        }
+    }
+
+    private void elegir(CatalogoMedicamentos.Entrada entrada) {
+        eligiendo = true;
+        try {
+            campo.setText(entrada.getNombre());
+        } finally {
+            eligiendo = false;
+        }
+        popup.setVisible(false);
+        alElegir.accept(entrada);
+    }
+}
@@ -1,181 +1,725 @@
-import javax.xml.parsers.*;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.*;
-import javax.xml.transform.stream.*;
-import org.w3c.dom.*;
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.function.Consumer;
 
-public class BaseDatosXML {
+/**
+ * persistencia local en medicamentos.xml
+ * mantiene un modelo residente en memoria que se carga una sola vez al iniciar:
+ * las lecturas se sirven desde memoria y el archivo solo se reescribe al modificar (write-through)
+ * en modo journal las altas y bajas se anexan a medicamentos.journal y el xml
+ * se reconstruye al compactar (cada cierto número de entradas o al cerrar)
+ * la lectura y escritura del archivo se hace en streaming con FlujoXML (stax)
+ * cada volcado se escribe en un temporal con fsync y se renombra atómicamente sobre el xml;
+ * los cambios que llegan dentro de xml.groupCommitMs se agrupan en un solo volcado
+ * al cerrar se deja un snapshot binario (medicamentos.snap) que se usa para arrancar
+ * mientras sea más reciente que el xml, que sigue siendo el formato de intercambio
+ */
+public class BaseDatosXML implements RepositorioMedicamentos {
     private static final String ARCHIVO_XML = "medicamentos.xml";
-    private static final String RAIZ = "medicamentos";
-    private static final String MEDICAMENTO = "medicamento";
-    
+    private static final String ARCHIVO_JOURNAL = "medicamentos.journal";
+    private static final String ARCHIVO_SNAPSHOT = "medicamentos.snap";
+    private static final int MAX_CAMBIOS_RECORDADOS = 10000;
+
+    // ===================== configuración (sobreescribible via xml.properties) =====================
+
+    private boolean modoJournal = false;        // anexar cambios al journal en lugar de reescribir el xml
+    private int compactarCada = 1000;           // entradas de journal que disparan la reconstrucción del xml
+    private long ventanaGroupCommitMs = 0;      // ventana para agrupar volcados (0 = volcar en cada cambio)
+    private boolean usarSnapshot = true;        // arrancar desde medicamentos.snap cuando esté vigente
+
+    // ===================== estado =====================
+
+    // modelo residente ordenado por id; como los ids se asignan en orden de alta
+    // coincide con el orden del archivo y las altas posteriores a un id quedan en tailMap
+    private final NavigableMap<Integer, Medicamento> registros = new TreeMap<>();
+    private int siguienteId = 1;                // ids monótonos: nunca se reutilizan
+    private boolean idsMigrados = false;        // se asignaron ids a registros antiguos al cargar
+    private final IndicesMedicamentos indices = new IndicesMedicamentos();
+    private EstadisticasInventario estadisticas = new EstadisticasInventario();  // agregados al día con cada cambio
+    // bajas y cambios de cantidad desde la carga; el cambio en la posición i tiene secuencia primerCambio + i
+    private final List<CambioReciente> cambiosRecientes = new ArrayList<>();
+    private long primerCambio = 1;
+    private long generacion = 0;                // generación del xml; el journal solo aplica si coincide
+    private Writer journal;                     // journal abierto en modo append
+    private FileOutputStream journalStream;     // flujo bajo el journal, para hacer fsync
+    private int entradasJournal = 0;            // entradas anexadas desde la última compactación
+    private EscrituraAgrupada escritura;        // coordina los volcados a disco (group commit)
+    private boolean snapshotVigente = false;    // el snapshot en disco refleja el xml actual
+
     public BaseDatosXML() {
+        this(null);
+    }
+
+    /**
+     * @param overrides propiedades personalizadas para sobreescribir xml.properties
+     */
+    public BaseDatosXML(Properties overrides) {
+        cargarConfiguracion(overrides);
         inicializarBaseDatos();
     }
-    
+
+    private void cargarConfiguracion(Properties overrides) {
+        Properties props = new Properties();
+        File configFile = new File("xml.properties");
+        if (configFile.exists()) {
+            try (FileInputStream fis = new FileInputStream(configFile)) {
+                props.load(fis);
+                System.out.println("[XML][cfg] cargado xml.properties");
+            } catch (IOException ex) {
+                System.err.println("[XML] no se pudo leer xml.properties: " + ex.getMessage());
+            }
+        }
+        if (overrides != null) props.putAll(overrides);
+        modoJournal = Boolean.parseBoolean(props.getProperty("xml.journal", String.valueOf(modoJournal)));
+        compactarCada = Integer.parseInt(props.getProperty("xml.journal.compactarCada", String.valueOf(compactarCada)));
+        ventanaGroupCommitMs = Long.parseLong(props.getProperty("xml.groupCommitMs", String.valueOf(ventanaGroupCommitMs)));
+        usarSnapshot = Boolean.parseBoolean(props.getProperty("xml.snapshot", String.valueOf(usarSnapshot)));
+    }
+
     private void inicializarBaseDatos() {
         File archivo = new File(ARCHIVO_XML);
         if (!archivo.exists()) {
             crearArchivoXMLVacio();
         }
+        cargarRegistros();
+
+        // un journal pendiente se reaplica aunque el modo journal ya no esté activo
+        File archivoJournal = new File(ARCHIVO_JOURNAL);
+        if (modoJournal || archivoJournal.exists()) {
+            abrirJournal();
+        }
+        if (!modoJournal && journal != null) {
+            cerrarJournal();
+            archivoJournal.delete();
+        }
+
+        if (idsMigrados) {
+            try {
+                // con journal abierto se compacta: el xml cambia de generación y el journal con él
+                if (journal != null) {
+                    compactar();
+                } else {
+                    guardarRegistros();
+                }
+                System.out.println("[XML] Asignados ids a registros anteriores");
+            } catch (Exception e) {
+                System.err.println("Error al guardar ids asignados: " + e.getMessage());
+            }
+        }
+
+        indices.reconstruir(registros.values());
+        estadisticas = EstadisticasInventario.calcular(registros.values());
+        escritura = new EscrituraAgrupada("XML", ventanaGroupCommitMs, this::volcarPendiente);
     }
-    
+
     private void crearArchivoXMLVacio() {
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.newDocument();
-            
-            Element raiz = doc.createElement(RAIZ);
-            doc.appendChild(raiz);
-            
-            guardarDocumento(doc);
+            FlujoXML.escribir(new File(ARCHIVO_XML), 0, Collections.emptyList());
         } catch (Exception e) {
             System.err.println("Error al crear archivo XML: " + e.getMessage());
         }
     }
-    
-    public void agregarMedicamento(String nombre, String tipo, int cantidad, String distribuidor, List<String> sucursales) {
+
+    // lectura única del archivo hacia el modelo residente
+    private synchronized void cargarRegistros() {
+        if (usarSnapshot && cargarDesdeSnapshot()) {
+            return;
+        }
+        registros.clear();
         try {
-            Document doc = cargarDocumento();
-            Element raiz = doc.getDocumentElement();
-            
-            Element medicamento = doc.createElement(MEDICAMENTO);
-            
-            // agregar atributos del medicamento
-            medicamento.setAttribute("nombre", nombre);
-            medicamento.setAttribute("tipo", tipo);
-            medicamento.setAttribute("cantidad", String.valueOf(cantidad));
-            medicamento.setAttribute("distribuidor", distribuidor);
-            medicamento.setAttribute("fecha", obtenerFechaActual());
-            
-            // agregar sucursales como elementos hijos
-            for (String sucursal : sucursales) {
-                Element sucursalElement = doc.createElement("sucursal");
-                sucursalElement.setTextContent(sucursal);
-                medicamento.appendChild(sucursalElement);
-            }
-            
-            raiz.appendChild(medicamento);
-            guardarDocumento(doc);
-            
+            File archivo = new File(ARCHIVO_XML);
+            generacion = FlujoXML.leerGeneracion(archivo);
+            List<Medicamento> leidos = new ArrayList<>();
+            FlujoXML.leer(archivo, leidos::add);
+            registrarCargados(leidos);
+            System.out.println("[XML] Cargados " + registros.size() + " medicamentos en memoria");
+        } catch (Exception e) {
+            System.err.println("Error al cargar medicamentos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * carga el modelo desde el snapshot binario si se generó a partir del xml actual:
+     * misma generación (cada reescritura del xml la incrementa) y mismo tamaño en bytes,
+     * que delata las ediciones hechas a mano. no se usan las fechas de modificación,
+     * cuya resolución en algunos sistemas de archivos no distingue dos escrituras seguidas
+     * @return true si se cargó; false para caer a la lectura del xml
+     */
+    private boolean cargarDesdeSnapshot() {
+        File snapshot = new File(ARCHIVO_SNAPSHOT);
+        File xml = new File(ARCHIVO_XML);
+        if (!snapshot.exists() || !xml.exists()) {
+            return false;
+        }
+        try {
+            long generacionXML = FlujoXML.leerGeneracion(xml);
+            List<Medicamento> leidos = new ArrayList<>();
+            if (!SnapshotBinario.leer(snapshot, generacionXML, xml.length(), leidos::add)) {
+                System.out.println("[XML][snapshot] el snapshot no corresponde al xml actual, se lee el xml");
+                return false;
+            }
+            registrarCargados(leidos);
+            generacion = generacionXML;
+            snapshotVigente = true;
+            System.out.println("[XML] Cargados " + registros.size() + " medicamentos desde snapshot");
+            return true;
+        } catch (Exception e) {
+            System.err.println("[XML][snapshot] no se pudo usar el snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * pasa los registros leídos al modelo residente y asigna id a los que no lo traen
+     * (archivos escritos antes de existir el atributo)
+     */
+    private void registrarCargados(List<Medicamento> leidos) {
+        registros.clear();
+        int maximo = 0;
+        for (Medicamento med : leidos) {
+            maximo = Math.max(maximo, med.getId());
+        }
+        siguienteId = maximo + 1;
+        for (Medicamento med : leidos) {
+            if (med.getId() <= 0 || registros.containsKey(med.getId())) {
+                med = med.conId(siguienteId++);
+                idsMigrados = true;
+            }
+            registros.put(med.getId(), med);
+        }
+    }
+
+    /**
+     * @return id asignado al nuevo registro
+     */
+    public synchronized int agregarMedicamento(String nombre, String tipo, int cantidad, String distribuidor, List<String> sucursales) {
+        int id = 0;
+        try {
+            id = registrarNuevo(nombre, tipo, cantidad, distribuidor, sucursales, FechaRegistro.ahora()).getId();
+            escritura.solicitar();
         } catch (Exception e) {
             System.err.println("Error al agregar medicamento: " + e.getMessage());
         }
+        return id;
     }
-    
-    public List<Medicamento> obtenerTodosLosMedicamentos() {
-        List<Medicamento> medicamentos = new ArrayList<>();
-        
+
+    /**
+     * alta en lote: todos los registros se agregan al modelo y se vuelcan con una sola escritura
+     * (o un solo fsync del journal). la fecha de cada medicamento se ignora y se usa la actual
+     * @param medicamentos registros a agregar (su id también se ignora)
+     * @return ids asignados, en el mismo orden de la lista
+     */
+    public synchronized List<Integer> agregarMedicamentos(List<Medicamento> medicamentos) {
+        List<Integer> ids = new ArrayList<>(medicamentos.size());
+        long fecha = FechaRegistro.ahora();
         try {
-            Document doc = cargarDocumento();
-            NodeList listaMedicamentos = doc.getElementsByTagName(MEDICAMENTO);
-            
-            for (int i = 0; i < listaMedicamentos.getLength(); i++) {
-                Element elemento = (Element) listaMedicamentos.item(i);
-                Medicamento medicamento = crearMedicamentoDesdeElemento(elemento);
-                medicamentos.add(medicamento);
-            }
-            
+            for (Medicamento med : medicamentos) {
+                ids.add(registrarNuevo(med.getNombre(), med.getTipo(), med.getCantidad(),
+                        med.getDistribuidor(), med.getSucursales(), fecha).getId());
+            }
+            escritura.solicitar();
         } catch (Exception e) {
-            System.err.println("Error al obtener medicamentos: " + e.getMessage());
-        }
-        
-        return medicamentos;
-    }
-    
-    public List<Medicamento> buscarMedicamentosPorTipo(String tipo) {
-        List<Medicamento> medicamentos = new ArrayList<>();
-        List<Medicamento> todos = obtenerTodosLosMedicamentos();
-        
-        for (Medicamento med : todos) {
-            if (med.getTipo().equalsIgnoreCase(tipo)) {
-                medicamentos.add(med);
-            }
-        }
-        
-        return medicamentos;
-    }
-    
-    public List<Medicamento> buscarMedicamentosPorDistribuidor(String distribuidor) {
-        List<Medicamento> medicamentos = new ArrayList<>();
-        List<Medicamento> todos = obtenerTodosLosMedicamentos();
-        
-        for (Medicamento med : todos) {
-            if (med.getDistribuidor().equalsIgnoreCase(distribuidor)) {
-                medicamentos.add(med);
-            }
-        }
-        
-        return medicamentos;
-    }
-    
-    private Medicamento crearMedicamentoDesdeElemento(Element elemento) {
-        String nombre = elemento.getAttribute("nombre");
-        String tipo = elemento.getAttribute("tipo");
-        int cantidad = Integer.parseInt(elemento.getAttribute("cantidad"));
-        String distribuidor = elemento.getAttribute("distribuidor");
-        String fecha = elemento.getAttribute("fecha");
-        
-        List<String> sucursales = new ArrayList<>();
-        NodeList sucursalesNodes = elemento.getElementsByTagName("sucursal");
-        for (int i = 0; i < sucursalesNodes.getLength(); i++) {
-            sucursales.add(sucursalesNodes.item(i).getTextContent());
-        }
-        
-        return new Medicamento(nombre, tipo, cantidad, distribuidor, sucursales, fecha);
-    }
-    
-    private Document cargarDocumento() throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        return builder.parse(new File(ARCHIVO_XML));
-    }
-    
-    private void guardarDocumento(Document doc) throws Exception {
-        TransformerFactory factory = TransformerFactory.newInstance();
-        Transformer transformer = factory.newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-        
-        DOMSource source = new DOMSource(doc);
-        StreamResult result = new StreamResult(new File(ARCHIVO_XML));
-        transformer.transform(source, result);
-    }
-    
-    private String obtenerFechaActual() {
-        return new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
-    }
-    
-    public void eliminarMedicamento(String nombre, String fecha) {
+            System.err.println("Error al agregar lote de medicamentos: " + e.getMessage());
+        }
+        return ids;
+    }
+
+    // asigna id, actualiza modelo e índices y anota el alta en el journal; no vuelca a disco
+    private Medicamento registrarNuevo(String nombre, String tipo, int cantidad, String distribuidor,
+                                       List<String> sucursales, long fecha) throws Exception {
+        Medicamento medicamento = new Medicamento(siguienteId++, nombre, tipo, cantidad, distribuidor, sucursales, fecha);
+        registros.put(medicamento.getId(), medicamento);
+        indices.agregar(medicamento);
+        estadisticas.sumar(medicamento);
+
+        if (modoJournal) {
+            anexarAlJournal("A", String.valueOf(medicamento.getId()), medicamento.getNombre(), medicamento.getTipo(),
+                    String.valueOf(medicamento.getCantidad()), medicamento.getDistribuidor(),
+                    FechaRegistro.texto(medicamento.getFechaMillis()), String.join(",", medicamento.getSucursales()));
+        }
+        return medicamento;
+    }
+
+    public synchronized List<Medicamento> obtenerTodosLosMedicamentos() {
+        // copia para que el llamador no altere el modelo residente
+        return new ArrayList<>(registros.values());
+    }
+
+    public synchronized Medicamento obtenerMedicamentoPorId(int id) {
+        return registros.get(id);
+    }
+
+    /**
+     * entrega cada medicamento residente al consumidor sin copiar la lista
+     * @param consumidor receptor de cada registro
+     * @return cantidad de medicamentos entregados
+     */
+    public synchronized int recorrerMedicamentos(Consumer<Medicamento> consumidor) {
+        for (Medicamento med : registros.values()) {
+            consumidor.accept(med);
+        }
+        return registros.size();
+    }
+
+    /**
+     * recorre en streaming un archivo xml con el mismo formato (por ejemplo un archivo histórico)
+     * sin cargarlo en el modelo residente; el uso de heap no depende del tamaño del archivo
+     * @param archivo archivo xml a leer
+     * @param consumidor receptor de cada registro
+     * @return cantidad de medicamentos leídos
+     */
+    public int recorrerArchivo(File archivo, Consumer<Medicamento> consumidor) {
         try {
-            Document doc = cargarDocumento();
-            NodeList listaMedicamentos = doc.getElementsByTagName(MEDICAMENTO);
-            
-            for (int i = 0; i < listaMedicamentos.getLength(); i++) {
-                Element elemento = (Element) listaMedicamentos.item(i);
-                if (elemento.getAttribute("nombre").equals(nombre) && 
-                    elemento.getAttribute("fecha").equals(fecha)) {
-                    elemento.getParentNode().removeChild(elemento);
-                    break;
-                }
+            return FlujoXML.leer(archivo, consumidor);
+        } catch (Exception e) {
+            System.err.println("Error al leer archivo " + archivo + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    public synchronized List<Medicamento> buscarMedicamentosPorTipo(String tipo) {
+        return indices.buscarPorTipo(tipo);
+    }
+
+    public synchronized List<Medicamento> buscarMedicamentosPorDistribuidor(String distribuidor) {
+        return indices.buscarPorDistribuidor(distribuidor);
+    }
+
+    /**
+     * mismo contrato que MySQLDatabase.obtenerMedicamentosFiltrados:
+     * "Todos los tipos" / "Todos los distribuidores" (o null) no filtran
+     */
+    public synchronized List<Medicamento> obtenerMedicamentosFiltrados(String tipo, String distribuidor) {
+        return obtenerMedicamentosFiltrados(tipo, distribuidor, null);
+    }
+
+    /**
+     * igual que el anterior, además solo los disponibles en la sucursal indicada
+     * ("Todas las sucursales" o null no filtran)
+     */
+    public synchronized List<Medicamento> obtenerMedicamentosFiltrados(String tipo, String distribuidor, String sucursal) {
+        String filtroTipo = tipo != null && !tipo.equals("Todos los tipos") ? tipo : null;
+        String filtroDistribuidor = distribuidor != null && !distribuidor.equals("Todos los distribuidores") ? distribuidor : null;
+        int filtroSucursal = 0;
+        if (sucursal != null && !sucursal.equals(Sucursales.TODAS)) {
+            filtroSucursal = Sucursales.bit(sucursal);
+            if (filtroSucursal == 0) {
+                return new ArrayList<>();   // sucursal desconocida: ningún registro puede tenerla
+            }
+        }
+
+        List<Medicamento> resultado = indices.filtrar(filtroTipo, filtroDistribuidor, filtroSucursal);
+        if (resultado != null) {
+            return resultado;
+        }
+        if (filtroSucursal == 0) {
+            return new ArrayList<>(registros.values());
+        }
+        // solo sucursal: una pasada en orden de id con el and de bits de cada registro
+        resultado = new ArrayList<>();
+        for (Medicamento med : registros.values()) {
+            if (med.estaEnSucursal(filtroSucursal)) {
+                resultado.add(med);
             }
-            
-            guardarDocumento(doc);
-            
+        }
+        return resultado;
+    }
+
+    /**
+     * siguiente página del registro en orden (fecha desc, id desc)
+     * @param despuesDe cursor de la última fila recibida, o null para la primera página
+     * @param tamano filas por página
+     */
+    public synchronized List<Medicamento> obtenerPagina(CursorPagina despuesDe, int tamano) {
+        return indices.pagina(despuesDe, tamano);
+    }
+
+    /**
+     * medicamentos cuyo nombre contiene el patrón (sin distinguir mayúsculas), más recientes primero;
+     * se resuelve con el índice de trigramas en lugar de recorrer todos los registros
+     */
+    public synchronized List<Medicamento> buscarPorNombre(String patron) {
+        return indices.buscarPorNombre(patron);
+    }
+
+    /**
+     * nombres distintos ya registrados con el tipo de su alta más reciente (catálogo del autocompletado)
+     */
+    public synchronized Map<String, String> obtenerNombresRegistrados() {
+        Map<String, String> nombres = new LinkedHashMap<>();
+        for (Medicamento med : registros.values()) {
+            nombres.put(med.getNombre(), med.getTipo());   // en orden de id: queda el último tipo usado
+        }
+        return nombres;
+    }
+
+    /**
+     * unidades por tipo, distribuidor, sucursal, día y semana
+     * se calculan en una pasada al cargar y luego se mantienen con cada alta, baja y cambio de cantidad
+     * @return copia que el llamador puede conservar
+     */
+    public synchronized EstadisticasInventario obtenerEstadisticas() {
+        return estadisticas.copia();
+    }
+
+    // ===================== cambios desde un cursor =====================
+
+    /**
+     * cursor que marca el estado actual, con el total de registros en ese punto;
+     * leer todo y luego pedir cambios desde aquí
+     */
+    public synchronized CursorCambios obtenerCursorCambios() {
+        return new CursorCambios(siguienteId - 1, primerCambio + cambiosRecientes.size() - 1, registros.size());
+    }
+
+    /**
+     * altas, bajas y modificaciones posteriores al cursor; el costo depende de la cantidad de cambios,
+     * no del total
+     * @param desde cursor obtenido antes con obtenerCursorCambios o de una consulta anterior
+     */
+    public synchronized CambiosRegistro obtenerCambiosDesde(CursorCambios desde) {
+        CursorCambios actual = obtenerCursorCambios();
+        if (desde == null || desde.getUltimoCambio() < primerCambio - 1
+                || desde.getUltimoCambio() > actual.getUltimoCambio() || desde.getUltimaAlta() > actual.getUltimaAlta()) {
+            return CambiosRegistro.recargaCompleta(actual);   // cambios ya olvidados o cursor ajeno
+        }
+        List<Medicamento> altas = new ArrayList<>(registros.tailMap((int) desde.getUltimaAlta(), false).values());
+        int primerPendiente = (int) (desde.getUltimoCambio() + 1 - primerCambio);
+        // solo cuentan los registros que el lector ya vio: uno creado después del cursor llega como
+        // alta con su versión actual, o no llega si ya se eliminó
+        List<Integer> bajas = new ArrayList<>();
+        Map<Integer, Medicamento> modificaciones = new LinkedHashMap<>();
+        for (CambioReciente cambio : cambiosRecientes.subList(primerPendiente, cambiosRecientes.size())) {
+            if (cambio.id > desde.getUltimaAlta()) {
+                continue;
+            }
+            if (cambio.baja) {
+                bajas.add(cambio.id);
+                modificaciones.remove(cambio.id);
+            } else if (registros.containsKey(cambio.id)) {
+                modificaciones.put(cambio.id, registros.get(cambio.id));
+            }
+        }
+        return new CambiosRegistro(altas, bajas, new ArrayList<>(modificaciones.values()), actual);
+    }
+
+    // una baja o un cambio de cantidad de un registro
+    private static final class CambioReciente {
+        final int id;
+        final boolean baja;
+
+        CambioReciente(int id, boolean baja) {
+            this.id = id;
+            this.baja = baja;
+        }
+    }
+
+    // el registro de cambios es acotado: al llenarse se olvida la mitad más antigua
+    // y los cursores anteriores a esa mitad reciben una recarga completa
+    private void anotarCambio(int id, boolean baja) {
+        cambiosRecientes.add(new CambioReciente(id, baja));
+        if (cambiosRecientes.size() > MAX_CAMBIOS_RECORDADOS) {
+            int olvidados = cambiosRecientes.size() / 2;
+            cambiosRecientes.subList(0, olvidados).clear();
+            primerCambio += olvidados;
+        }
+    }
+
+    /**
+     * medicamentos registrados entre dos fechas (extremos incluidos), en orden cronológico
+     * @param desde "yyyy-MM-dd" o "yyyy-MM-dd HH:mm:ss", null para sin límite inferior
+     * @param hasta mismo formato, null para sin límite superior
+     */
+    public synchronized List<Medicamento> buscarMedicamentosPorRangoFecha(String desde, String hasta) {
+        return indices.buscarPorRangoFecha(desde, hasta);
+    }
+
+    // vuelca el modelo residente completo al archivo
+    // se escribe completo en un temporal sincronizado a disco y luego se renombra,
+    // así una caída a mitad de escritura nunca deja medicamentos.xml truncado
+    // cada volcado lleva una generación nueva, que es la que valida el snapshot binario
+    private void guardarRegistros() throws Exception {
+        generacion++;
+        File destino = new File(ARCHIVO_XML);
+        File temporal = new File(ARCHIVO_XML + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temporal)) {
+            BufferedOutputStream out = new BufferedOutputStream(fos);
+            FlujoXML.escribir(out, generacion, registros.values());
+            out.flush();
+            fos.getChannel().force(true);
+        }
+        try {
+            Files.move(temporal.toPath(), destino.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        snapshotVigente = false;
+    }
+
+    /**
+     * volcado ejecutado por el group commit: sincroniza el journal o reescribe el xml
+     */
+    private synchronized void volcarPendiente() throws Exception {
+        if (modoJournal) {
+            if (journal != null) {
+                journal.flush();
+                journalStream.getFD().sync();
+            }
+        } else {
+            guardarRegistros();
+        }
+    }
+
+    /**
+     * elimina el primer registro con ese nombre y fecha
+     * @deprecated dos pedidos iguales en el mismo segundo no se distinguen; usar eliminarMedicamentoPorId
+     */
+    @Deprecated
+    public synchronized void eliminarMedicamento(String nombre, String fecha) {
+        long fechaMillis = FechaRegistro.aMillis(fecha);
+        for (Medicamento med : registros.values()) {
+            if (med.getNombre().equals(nombre) && med.getFechaMillis() == fechaMillis) {
+                eliminarMedicamentoPorId(med.getId());
+                return;
+            }
+        }
+    }
+
+    public synchronized boolean eliminarMedicamentoPorId(int id) {
+        Medicamento med = registros.remove(id);
+        if (med == null) {
+            return false; // nada cambió, no hace falta tocar el archivo
+        }
+        indices.eliminar(med);
+        estadisticas.restar(med);
+        anotarCambio(id, true);
+
+        try {
+            if (modoJournal) {
+                anexarAlJournal("D", String.valueOf(id));
+            }
+            escritura.solicitar();
         } catch (Exception e) {
             System.err.println("Error al eliminar medicamento: " + e.getMessage());
         }
+        return true;
     }
-    
-    public int obtenerTotalMedicamentos() {
+
+    public synchronized boolean actualizarCantidad(int id, int nuevaCantidad) {
+        Medicamento med = registros.get(id);
+        if (med == null) {
+            return false;
+        }
+        // el registro es inmutable: la versión nueva ocupa su lugar en el modelo y en los índices
+        Medicamento actualizado = med.conCantidad(nuevaCantidad);
+        registros.put(id, actualizado);
+        indices.reemplazar(med, actualizado);
+        estadisticas.restar(med);
+        estadisticas.sumar(actualizado);
+        anotarCambio(id, false);
+
         try {
-            Document doc = cargarDocumento();
-            return doc.getElementsByTagName(MEDICAMENTO).getLength();
+            if (modoJournal) {
+                anexarAlJournal("C", String.valueOf(id), String.valueOf(nuevaCantidad));
+            }
+            escritura.solicitar();
         } catch (Exception e) {
-            return 0;
+            System.err.println("Error al actualizar cantidad: " + e.getMessage());
+        }
+        return true;
+    }
+
+    public synchronized int obtenerTotalMedicamentos() {
+        return registros.size();
+    }
+
+    // ===================== journal de solo anexado =====================
+
+    /**
+     * reaplica el journal sobre el modelo recién cargado y lo deja abierto para anexar.
+     * si el journal pertenece a otra generación (caída tras compactar) se descarta
+     */
+    private void abrirJournal() {
+        File archivo = new File(ARCHIVO_JOURNAL);
+        int reaplicadas = 0;
+        if (archivo.exists()) {
+            try (BufferedReader lector = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(archivo), "UTF-8"))) {
+                String linea = lector.readLine();
+                String[] cabecera = linea == null ? null : separarCampos(linea);
+                if (cabecera != null && cabecera[0].equals("G") && Long.parseLong(cabecera[1]) == generacion) {
+                    while ((linea = lector.readLine()) != null) {
+                        if (reaplicarEntrada(separarCampos(linea))) {
+                            reaplicadas++;
+                        }
+                    }
+                } else if (cabecera != null) {
+                    System.out.println("[XML][journal] journal de otra generación, se descarta");
+                }
+            } catch (Exception e) {
+                // una línea truncada por una caída solo pierde esa última operación
+                System.err.println("[XML][journal] lectura interrumpida: " + e.getMessage());
+            }
+        }
+
+        try {
+            if (reaplicadas > 0) {
+                System.out.println("[XML][journal] reaplicadas " + reaplicadas + " entradas");
+                compactar();
+            } else {
+                reiniciarJournal();
+            }
+        } catch (Exception e) {
+            System.err.println("[XML][journal] no se pudo abrir el journal: " + e.getMessage());
+        }
+    }
+
+    // entradas: A id nombre tipo cantidad distribuidor fecha sucursales | D id | C id cantidad
+    // (las entradas sin id de journals anteriores se siguen aceptando)
+    private boolean reaplicarEntrada(String[] campos) {
+        switch (campos[0]) {
+            case "A":
+                int desplazamiento = campos.length >= 8 ? 1 : 0;
+                int id = desplazamiento == 1 ? Integer.parseInt(campos[1]) : siguienteId;
+                String sucursalesTexto = campos[6 + desplazamiento];
+                List<String> sucursales = sucursalesTexto.isEmpty()
+                        ? Collections.emptyList() : Arrays.asList(sucursalesTexto.split(","));
+                registros.put(id, new Medicamento(id, campos[1 + desplazamiento], campos[2 + desplazamiento],
+                        Integer.parseInt(campos[3 + desplazamiento]), campos[4 + desplazamiento],
+                        sucursales, campos[5 + desplazamiento]));
+                siguienteId = Math.max(siguienteId, id + 1);
+                return true;
+            case "D":
+                if (campos.length == 2) {
+                    return registros.remove(Integer.parseInt(campos[1])) != null;
+                }
+                for (Iterator<Medicamento> it = registros.values().iterator(); it.hasNext(); ) {
+                    Medicamento med = it.next();
+                    if (med.getNombre().equals(campos[1]) && med.getFechaMillis() == FechaRegistro.aMillis(campos[2])) {
+                        it.remove();
+                        return true;
+                    }
+                }
+                return false;
+            case "C":
+                Medicamento med = registros.get(Integer.parseInt(campos[1]));
+                if (med == null) return false;
+                registros.put(med.getId(), med.conCantidad(Integer.parseInt(campos[2])));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void anexarAlJournal(String... campos) throws Exception {
+        StringBuilder linea = new StringBuilder();
+        for (int i = 0; i < campos.length; i++) {
+            if (i > 0) linea.append('\t');
+            escaparCampo(campos[i], linea);
+        }
+        linea.append('\n');
+        journal.write(linea.toString());
+
+        if (++entradasJournal >= compactarCada) {
+            compactar();
+        }
+    }
+
+    /**
+     * reconstruye medicamentos.xml desde el modelo residente y vacía el journal.
+     * la generación nueva se escribe primero en el xml para que un journal viejo
+     * que sobreviva a una caída no se vuelva a aplicar
+     */
+    public synchronized void compactar() throws Exception {
+        guardarRegistros();
+        reiniciarJournal();
+        System.out.println("[XML][journal] compactado (" + registros.size() + " registros)");
+    }
+
+    private void reiniciarJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        journalStream = new FileOutputStream(ARCHIVO_JOURNAL, false);
+        journal = new BufferedWriter(new OutputStreamWriter(journalStream, "UTF-8"));
+        entradasJournal = 0;
+        anexarCabecera();
+    }
+
+    private void anexarCabecera() throws IOException {
+        journal.write("G\t" + generacion + "\n");
+        journal.flush();
+        journalStream.getFD().sync();
+    }
+
+    private static void escaparCampo(String valor, StringBuilder destino) {
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '\\': destino.append("\\\\"); break;
+                case '\t': destino.append("\\t"); break;
+                case '\n': destino.append("\\n"); break;
+                case '\r': destino.append("\\r"); break;
+                default: destino.append(c);
+            }
+        }
+    }
+
+    private static String[] separarCampos(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (c == '\t') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else if (c == '\\' && i + 1 < linea.length()) {
+                char siguiente = linea.charAt(++i);
+                actual.append(siguiente == 't' ? '\t' : siguiente == 'n' ? '\n' : siguiente == 'r' ? '\r' : siguiente);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos.toArray(new String[0]);
+    }
+
+    /**
+     * vuelca lo que quede pendiente y en modo journal deja el xml al día antes de salir
+     */
+    @Override
+    public void close() {
+        if (escritura != null) {
+            escritura.close();
+        }
+        cerrarJournal();
+        guardarSnapshot();
+    }
+
+    // con el xml ya al día, deja el snapshot para el próximo arranque
+    private synchronized void guardarSnapshot() {
+        if (!usarSnapshot || snapshotVigente) return;
+        try {
+            File xml = new File(ARCHIVO_XML);
+            SnapshotBinario.escribir(new File(ARCHIVO_SNAPSHOT), generacion, xml.length(), registros.values());
+            snapshotVigente = true;
+        } catch (Exception e) {
+            System.err.println("[XML][snapshot] no se pudo guardar el snapshot: " + e.getMessage());
+        }
+    }
+
+    private synchronized void cerrarJournal() {
+        if (journal == null) return;
+        try {
+            if (entradasJournal > 0) {
+                compactar();
+            }
+            journal.close();
+            journal = null;
+        } catch (Exception e) {
+            System.err.println("[XML][journal] error al cerrar: " + e.getMessage());
         }
     }
 }
@@ -0,0 +1,47 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * altas, bajas y modificaciones ocurridas desde un CursorCambios, junto con el cursor para la
+ * siguiente consulta
+ * si el almacenamiento ya no conserva las bajas desde ese cursor, recargar indica que
+ * el llamador debe volver a leer todo
+ */
+public final class CambiosRegistro {
+    private final List<Medicamento> altas;      // en orden de id ascendente
+    private final List<Integer> bajas;          // ids eliminados
+    private final List<Medicamento> modificaciones;   // versión actual de registros ya vistos que cambiaron
+    private final CursorCambios cursor;
+    private final boolean recargar;
+
+    public CambiosRegistro(List<Medicamento> altas, List<Integer> bajas, List<Medicamento> modificaciones,
+                           CursorCambios cursor) {
+        this(altas, bajas, modificaciones, cursor, false);
+    }
+
+    private CambiosRegistro(List<Medicamento> altas, List<Integer> bajas, List<Medicamento> modificaciones,
+                            CursorCambios cursor, boolean recargar) {
+        this.altas = altas;
+        this.bajas = bajas;
+        this.modificaciones = modificaciones;
+        this.cursor = cursor;
+        this.recargar = recargar;
+    }
+
+    /**
+     * el cursor es demasiado antiguo (o de otro almacenamiento): hay que recargar desde cursor
+     */
+    public static CambiosRegistro recargaCompleta(CursorCambios cursor) {
+        return new CambiosRegistro(Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), cursor, true);
+    }
+
+    public List<Medicamento> getAltas() { return altas; }
+    public List<Integer> getBajas() { return bajas; }
+    public List<Medicamento> getModificaciones() { return modificaciones; }
+    public CursorCambios getCursor() { return cursor; }
+    public boolean isRecargar() { return recargar; }
+
+    public boolean estaVacio() {
+        return altas.isEmpty() && bajas.isEmpty() && modificaciones.isEmpty();
+    }
+}
@@ -0,0 +1,170 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * catálogo de nombres de medicamentos para el autocompletado del formulario
+ * une el archivo local catalogo_medicamentos.txt (una línea "nombre;tipo", # para comentarios)
+ * con los nombres ya registrados; los nombres que solo difieren en mayúsculas, tildes o espacios
+ * cuentan como uno y se conserva la grafía del archivo
+ *
+ * se guarda en tres arreglos paralelos ordenados por nombre normalizado: una sugerencia es una
+ * búsqueda binaria del prefijo más un recorrido de a lo sumo "limite" posiciones
+ */
+public class CatalogoMedicamentos {
+    public static final String ARCHIVO = "catalogo_medicamentos.txt";
+
+    // estado inmutable: las lecturas no se bloquean y agregar publica arreglos nuevos
+    private static final class Arreglos {
+        final String[] claves;    // nombre normalizado, en orden
+        final String[] nombres;   // nombre a mostrar
+        final String[] tipos;     // tipo asociado (puede ser vacío)
+
+        Arreglos(String[] claves, String[] nombres, String[] tipos) {
+            this.claves = claves;
+            this.nombres = nombres;
+            this.tipos = tipos;
+        }
+    }
+
+    /**
+     * sugerencia: nombre con su tipo
+     */
+    public static final class Entrada {
+        private final String nombre;
+        private final String tipo;
+
+        Entrada(String nombre, String tipo) {
+            this.nombre = nombre;
+            this.tipo = tipo;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public String getTipo() {
+            return tipo;
+        }
+
+        @Override
+        public String toString() {
+            return tipo.isEmpty() ? nombre : nombre + "  (" + tipo + ")";
+        }
+    }
+
+    private volatile Arreglos arreglos = new Arreglos(new String[0], new String[0], new String[0]);
+    private volatile boolean cargado = false;
+
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * arma el catálogo a partir del archivo y de los nombres registrados; pensado para correr
+     * fuera del hilo de eventos la primera vez que se usa el campo
+     * @param archivo catálogo local (si no existe solo se usan los registrados)
+     * @param registrados nombre -> tipo de los medicamentos ya guardados
+     */
+    public void cargar(File archivo, Map<String, String> registrados) {
+        // clave normalizada -> {nombre, tipo}; el archivo se lee primero y gana en los duplicados
+        Map<String, String[]> porClave = new HashMap<>();
+        int delArchivo = 0;
+        if (archivo.exists()) {
+            try (BufferedReader lector = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(archivo), StandardCharsets.UTF_8))) {
+                String linea;
+                while ((linea = lector.readLine()) != null) {
+                    linea = linea.trim();
+                    if (linea.isEmpty() || linea.startsWith("#")) {
+                        continue;
+                    }
+                    int separador = linea.indexOf(';');
+                    String nombre = separador < 0 ? linea : linea.substring(0, separador).trim();
+                    String tipo = separador < 0 ? "" : linea.substring(separador + 1).trim();
+                    if (porClave.putIfAbsent(IndicePrefijos.normalizar(nombre), new String[]{nombre, tipo}) == null) {
+                        delArchivo++;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("[Catalogo] no se pudo leer " + archivo + ": " + e.getMessage());
+            }
+        }
+        for (Map.Entry<String, String> registrado : registrados.entrySet()) {
+            String tipo = registrado.getValue() == null ? "" : registrado.getValue();
+            porClave.putIfAbsent(IndicePrefijos.normalizar(registrado.getKey()), new String[]{registrado.getKey(), tipo});
+        }
+        porClave.remove("");
+
+        String[] claves;
+        synchronized (this) {
+            // nombres agregados mientras se leía
+            Arreglos previos = arreglos;
+            for (int i = 0; i < previos.claves.length; i++) {
+                porClave.putIfAbsent(previos.claves[i], new String[]{previos.nombres[i], previos.tipos[i]});
+            }
+
+            claves = porClave.keySet().toArray(new String[0]);
+            Arrays.sort(claves);
+            String[] nombres = new String[claves.length];
+            String[] tipos = new String[claves.length];
+            for (int i = 0; i < claves.length; i++) {
+                String[] entrada = porClave.get(claves[i]);
+                nombres[i] = entrada[0];
+                tipos[i] = entrada[1];
+            }
+            arreglos = new Arreglos(claves, nombres, tipos);
+            cargado = true;
+        }
+        System.out.println("[Catalogo] " + claves.length + " nombres (" + delArchivo + " del archivo)");
+    }
+
+    /**
+     * incorpora un nombre recién registrado si aún no está
+     */
+    public synchronized void agregar(String nombre, String tipo) {
+        String clave = IndicePrefijos.normalizar(nombre);
+        Arreglos actual = arreglos;
+        int posicion = Arrays.binarySearch(actual.claves, clave);
+        if (clave.isEmpty() || posicion >= 0) {
+            return;
+        }
+        int insercion = -posicion - 1;
+        arreglos = new Arreglos(insertar(actual.claves, insercion, clave),
+                insertar(actual.nombres, insercion, nombre),
+                insertar(actual.tipos, insercion, tipo == null ? "" : tipo));
+    }
+
+    /**
+     * nombres del catálogo que empiezan por el prefijo (sin tildes ni mayúsculas), en orden alfabético
+     * @param prefijo texto escrito
+     * @param limite máximo de sugerencias
+     */
+    public List<Entrada> sugerir(String prefijo, int limite) {
+        String buscado = IndicePrefijos.normalizar(prefijo);
+        if (buscado.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Arreglos actual = arreglos;
+        int posicion = Arrays.binarySearch(actual.claves, buscado);
+        // si no está exacto, el primer candidato es el punto de inserción
+        int inicio = posicion >= 0 ? posicion : -posicion - 1;
+
+        List<Entrada> resultado = new ArrayList<>();
+        for (int i = inicio; i < actual.claves.length && resultado.size() < limite; i++) {
+            if (!actual.claves[i].startsWith(buscado)) {
+                break;
+            }
+            resultado.add(new Entrada(actual.nombres[i], actual.tipos[i]));
+        }
+        return resultado;
+    }
+
+    private static String[] insertar(String[] arreglo, int posicion, String valor) {
+        String[] nuevo = new String[arreglo.length + 1];
+        System.arraycopy(arreglo, 0, nuevo, 0, posicion);
+        nuevo[posicion] = valor;
+        System.arraycopy(arreglo, posicion, nuevo, posicion + 1, arreglo.length - posicion);
+        return nuevo;
+    }
+}
@@ -0,0 +1,50 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * ajustes que no son de un almacenamiento en particular (tabla y panel de registros, cache de lecturas)
+ * se leen de los mismos archivos que el resto de la configuración: primero xml.properties y después
+ * mysql.properties, que gana si una clave está en los dos; los archivos se leen una sola vez
+ */
+public final class Configuracion {
+    private static final String[] ARCHIVOS = {"xml.properties", "mysql.properties"};
+
+    private static Properties propiedades;
+
+    private Configuracion() { }
+
+    /**
+     * valor entero de la clave, o el valor por defecto si no está o no es un número
+     */
+    public static int entero(String clave, int porDefecto) {
+        String valor = propiedades().getProperty(clave);
+        if (valor == null) {
+            return porDefecto;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("[cfg] valor no numérico para " + clave + ": '" + valor + "', se usa " + porDefecto);
+            return porDefecto;
+        }
+    }
+
+    private static synchronized Properties propiedades() {
+        if (propiedades == null) {
+            Properties leidas = new Properties();
+            for (String archivo : ARCHIVOS) {
+                File configFile = new File(archivo);
+                if (!configFile.exists()) continue;
+                try (FileInputStream fis = new FileInputStream(configFile)) {
+                    leidas.load(fis);
+                } catch (IOException ex) {
+                    System.err.println("[cfg] no se pudo leer " + archivo + ": " + ex.getMessage());
+                }
+            }
+            propiedades = leidas;
+        }
+        return propiedades;
+    }
+}
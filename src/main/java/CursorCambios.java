@@ -0,0 +1,34 @@
+/**
+ * marca de agua para pedir solo los cambios posteriores a una lectura
+ * cada almacenamiento numera a su manera: el xml marca las altas por id (los ids solo crecen) y
+ * las bajas y modificaciones por la secuencia de su registro de cambios; mysql usa para las dos
+ * marcas el número de cambio con que sella las filas confirmadas (ver MySQLDatabase.sellarCambios)
+ * puede traer el total de registros leído junto con la marca, para sumarle después los cambios
+ */
+public final class CursorCambios {
+    public static final int SIN_TOTAL = -1;
+
+    private final long ultimaAlta;      // marca de la última alta ya vista
+    private final long ultimoCambio;    // secuencia de la última baja o modificación ya vista
+    private final int total;            // registros existentes en esa marca (SIN_TOTAL si no se leyó)
+
+    public CursorCambios(long ultimaAlta, long ultimoCambio) {
+        this(ultimaAlta, ultimoCambio, SIN_TOTAL);
+    }
+
+    public CursorCambios(long ultimaAlta, long ultimoCambio, int total) {
+        this.ultimaAlta = ultimaAlta;
+        this.ultimoCambio = ultimoCambio;
+        this.total = total;
+    }
+
+    public long getUltimaAlta() { return ultimaAlta; }
+    public long getUltimoCambio() { return ultimoCambio; }
+    public int getTotal() { return total; }
+    public boolean tieneTotal() { return total != SIN_TOTAL; }
+
+    @Override
+    public String toString() {
+        return "CursorCambios(" + ultimaAlta + ", " + ultimoCambio + (tieneTotal() ? ", total=" + total : "") + ")";
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * posición de lectura para la paginación por clave (keyset) de los registros
+ * las páginas se ordenan por fecha descendente y, a igual fecha, por id descendente;
+ * el cursor guarda la clave (fecha, id) de la última fila entregada, así la siguiente
+ * página se busca con el índice de fecha en lugar de saltar filas con offset
+ */
+public final class CursorPagina {
+    private final long fechaMillis; // fecha de la última fila entregada (ver FechaRegistro)
+    private final int id;           // id de la última fila entregada (desempate a igual fecha)
+
+    public CursorPagina(long fechaMillis, int id) {
+        this.fechaMillis = fechaMillis;
+        this.id = id;
+    }
+
+    /**
+     * cursor que apunta justo después del medicamento dado
+     */
+    public static CursorPagina despuesDe(Medicamento med) {
+        return new CursorPagina(med.getFechaMillis(), med.getId());
+    }
+
+    public long getFechaMillis() { return fechaMillis; }
+    public int getId() { return id; }
+
+    @Override
+    public String toString() {
+        return "CursorPagina(" + FechaRegistro.texto(fechaMillis) + ", " + id + ")";
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * codificación por diccionario de los campos con pocos valores distintos (tipo y distribuidor)
+ * cada texto distinto recibe un código entero pequeño y se guarda una sola vez, así un millón
+ * de registros comparten unas pocas cadenas en lugar de tener una copia cada uno
+ * además cada código pertenece a un grupo: los textos iguales sin distinguir mayúsculas
+ * ("Cofarma", "cofarma") comparten grupo, y comparar dos valores como lo hace mysql es
+ * comparar dos enteros
+ * los códigos solo crecen y valen mientras dure el proceso; no deben guardarse en disco
+ */
+public final class DiccionarioValores {
+    public static final DiccionarioValores TIPOS = new DiccionarioValores();
+    public static final DiccionarioValores DISTRIBUIDORES = new DiccionarioValores();
+
+    public static final int SIN_VALOR = -1;    // código y grupo de null
+    public static final int DESCONOCIDO = -2;  // grupo de un texto que ningún registro usa: no coincide con nada
+
+    // lectura sin bloqueo: las altas (pocas) se serializan en registrar
+    private final Map<String, Integer> codigos = new ConcurrentHashMap<>();
+    private final Map<String, Integer> gruposPorClave = new ConcurrentHashMap<>();
+    // arreglos con holgura; cada alta vuelve a asignar los campos volatile para publicar la posición nueva
+    private volatile String[] valores = new String[16];
+    private volatile int[] grupos = new int[16];
+    private int cantidad = 0;
+
+    /**
+     * código del texto; la primera vez que aparece lo registra
+     */
+    public int codigo(String valor) {
+        if (valor == null) {
+            return SIN_VALOR;
+        }
+        Integer codigo = codigos.get(valor);
+        return codigo != null ? codigo : registrar(valor);
+    }
+
+    private synchronized int registrar(String valor) {
+        Integer existente = codigos.get(valor);
+        if (existente != null) {
+            return existente;
+        }
+        int codigo = cantidad;
+        String[] nuevosValores = valores;
+        int[] nuevosGrupos = grupos;
+        if (codigo == nuevosValores.length) {
+            nuevosValores = Arrays.copyOf(nuevosValores, codigo * 2);
+            nuevosGrupos = Arrays.copyOf(nuevosGrupos, codigo * 2);
+        }
+        nuevosValores[codigo] = valor;
+        nuevosGrupos[codigo] = gruposPorClave.computeIfAbsent(clave(valor), k -> codigo);
+        valores = nuevosValores;
+        grupos = nuevosGrupos;
+        cantidad++;
+        codigos.put(valor, codigo);
+        return codigo;
+    }
+
+    /**
+     * texto original del código (null para SIN_VALOR)
+     */
+    public String valor(int codigo) {
+        return codigo == SIN_VALOR ? null : valores[codigo];
+    }
+
+    /**
+     * grupo del código: el mismo para todos los textos que solo difieren en mayúsculas
+     */
+    public int grupo(int codigo) {
+        return codigo == SIN_VALOR ? SIN_VALOR : grupos[codigo];
+    }
+
+    /**
+     * grupo de un texto sin registrarlo; DESCONOCIDO si ningún registro lo usa todavía
+     */
+    public int grupoDe(String valor) {
+        if (valor == null) {
+            return SIN_VALOR;
+        }
+        Integer grupo = gruposPorClave.get(clave(valor));
+        return grupo == null ? DESCONOCIDO : grupo;
+    }
+
+    /**
+     * cantidad de textos distintos registrados
+     */
+    public synchronized int tamano() {
+        return cantidad;
+    }
+
+    private static String clave(String valor) {
+        return valor.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.concurrent.*;
+
+/**
+ * agrupa solicitudes de guardado (group commit)
+ * las solicitudes que llegan dentro de la ventana configurada se resuelven con
+ * un único volcado a disco; con ventana 0 cada solicitud se vuelca de inmediato
+ */
+public class EscrituraAgrupada implements AutoCloseable {
+
+    /**
+     * acción de volcado que puede fallar con cualquier excepción de e/s
+     */
+    public interface Volcado {
+        void ejecutar() throws Exception;
+    }
+
+    private final long ventanaMs;
+    private final Volcado volcado;
+    private final String nombre;
+    private final ScheduledExecutorService programador;
+    private ScheduledFuture<?> pendiente;       // volcado programado aún no ejecutado
+    private final Object volcando = new Object();   // un solo volcado a la vez; vaciar espera al que esté en curso
+
+    /**
+     * @param nombre nombre para los logs y el hilo de volcado
+     * @param ventanaMs milisegundos durante los que se acumulan solicitudes (0 = síncrono)
+     * @param volcado acción que escribe el estado actual a disco
+     */
+    public EscrituraAgrupada(String nombre, long ventanaMs, Volcado volcado) {
+        this.nombre = nombre;
+        this.ventanaMs = ventanaMs;
+        this.volcado = volcado;
+        if (ventanaMs > 0) {
+            programador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "group-commit-" + nombre);
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        } else {
+            programador = null;
+        }
+    }
+
+    /**
+     * registra que hay cambios por volcar
+     * en modo síncrono escribe antes de retornar y propaga el error
+     */
+    public void solicitar() throws Exception {
+        if (programador == null) {
+            volcado.ejecutar();
+            return;
+        }
+        synchronized (this) {
+            if (pendiente == null) {
+                pendiente = programador.schedule(this::volcarProgramado, ventanaMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void volcarProgramado() {
+        synchronized (volcando) {
+            synchronized (this) {
+                pendiente = null;
+            }
+            try {
+                volcado.ejecutar();
+            } catch (Exception e) {
+                System.err.println("[" + nombre + "][group-commit] error al volcar: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * vuelca de inmediato lo que esté pendiente (por ejemplo antes de cerrar)
+     * si el volcado programado ya empezó no se repite, pero se espera a que termine
+     */
+    public void vaciar() throws Exception {
+        ScheduledFuture<?> programado;
+        synchronized (this) {
+            programado = pendiente;
+            pendiente = null;
+        }
+        boolean cancelado = programado != null && programado.cancel(false);
+        // tomar el lock espera al volcado en curso, también al que ya había quitado su marca de pendiente
+        synchronized (volcando) {
+            if (cancelado) {
+                volcado.ejecutar();
+            }
+        }
+        if (programado != null && !cancelado) {
+            try {
+                programado.get();   // en curso o a punto de tomar el lock: su escritura incluye lo pendiente
+            } catch (CancellationException | ExecutionException e) {
+                // volcarProgramado ya informa sus propios errores
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            vaciar();
+        } catch (Exception e) {
+            System.err.println("[" + nombre + "][group-commit] error en volcado final: " + e.getMessage());
+        }
+        if (programador != null) {
+            programador.shutdown();
+        }
+    }
+}
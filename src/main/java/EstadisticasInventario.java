@@ -0,0 +1,180 @@
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.util.*;
+
+/**
+ * agregados del inventario para tableros: unidades por tipo, distribuidor, sucursal, día y semana
+ * se arma de forma incremental (sumar/restar por registro, o acumular grupos ya agregados
+ * por el servidor), así los almacenamientos pueden mantenerlo al día sin recorrer todo de nuevo
+ */
+public class EstadisticasInventario {
+
+    // registros y unidades de un grupo; el grupo desaparece cuando se queda sin registros
+    private static final class Acumulado {
+        long registros;
+        long unidades;
+    }
+
+    // tipo y distribuidor sin distinguir mayúsculas, igual que la collation de mysql
+    private final Map<String, Acumulado> porTipo = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, Acumulado> porDistribuidor = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, Acumulado> porSucursal = new LinkedHashMap<>();
+    private final NavigableMap<String, Acumulado> porDia = new TreeMap<>();   // "yyyy-MM-dd"
+    // último día formateado: en una carga los registros vienen agrupados por fecha
+    private long ultimoDia = Long.MIN_VALUE;
+    private String ultimoDiaTexto;
+
+    /**
+     * estadísticas de una colección en una sola pasada
+     */
+    public static EstadisticasInventario calcular(Iterable<Medicamento> medicamentos) {
+        EstadisticasInventario estadisticas = new EstadisticasInventario();
+        for (Medicamento med : medicamentos) {
+            estadisticas.sumar(med);
+        }
+        return estadisticas;
+    }
+
+    public void sumar(Medicamento med) {
+        acumular(med, 1, med.getCantidad());
+    }
+
+    public void restar(Medicamento med) {
+        acumular(med, -1, -med.getCantidad());
+    }
+
+    private void acumular(Medicamento med, long registros, long unidades) {
+        acumularTipo(med.getTipo(), registros, unidades);
+        acumularDistribuidor(med.getDistribuidor(), registros, unidades);
+        acumularSucursales(med.getMascaraSucursales(), registros, unidades);
+        acumularDia(dia(med.getFechaMillis()), registros, unidades);
+    }
+
+    private String dia(long fechaMillis) {
+        long dia = Math.floorDiv(fechaMillis, 86_400_000L);
+        if (dia != ultimoDia) {
+            ultimoDia = dia;
+            ultimoDiaTexto = FechaRegistro.dia(fechaMillis);
+        }
+        return ultimoDiaTexto;
+    }
+
+    // ===== grupos ya agregados (por ejemplo resultados de un group by) =====
+
+    void acumularTipo(String tipo, long registros, long unidades) {
+        acumular(porTipo, tipo, registros, unidades);
+    }
+
+    void acumularDistribuidor(String distribuidor, long registros, long unidades) {
+        acumular(porDistribuidor, distribuidor, registros, unidades);
+    }
+
+    // un registro cuenta en cada una de las sucursales de su máscara
+    void acumularSucursales(int mascara, long registros, long unidades) {
+        for (String sucursal : Sucursales.todas()) {
+            if ((mascara & Sucursales.bit(sucursal)) != 0) {
+                acumular(porSucursal, sucursal, registros, unidades);
+            }
+        }
+    }
+
+    void acumularDia(String dia, long registros, long unidades) {
+        acumular(porDia, dia, registros, unidades);
+    }
+
+    /**
+     * suma los grupos de otras estadísticas (por ejemplo las de los registros nuevos)
+     */
+    public void combinar(EstadisticasInventario otras) {
+        combinar(porTipo, otras.porTipo);
+        combinar(porDistribuidor, otras.porDistribuidor);
+        combinar(porSucursal, otras.porSucursal);
+        combinar(porDia, otras.porDia);
+    }
+
+    public EstadisticasInventario copia() {
+        EstadisticasInventario copia = new EstadisticasInventario();
+        copia.combinar(this);
+        return copia;
+    }
+
+    // ===== consultas =====
+
+    public long getTotalRegistros() {
+        long total = 0;
+        for (Acumulado acumulado : porTipo.values()) {
+            total += acumulado.registros;
+        }
+        return total;
+    }
+
+    public long getTotalUnidades() {
+        long total = 0;
+        for (Acumulado acumulado : porTipo.values()) {
+            total += acumulado.unidades;
+        }
+        return total;
+    }
+
+    public Map<String, Long> getUnidadesPorTipo() {
+        return unidades(porTipo);
+    }
+
+    public Map<String, Long> getUnidadesPorDistribuidor() {
+        return unidades(porDistribuidor);
+    }
+
+    public Map<String, Long> getUnidadesPorSucursal() {
+        return unidades(porSucursal);
+    }
+
+    /**
+     * unidades por día en orden cronológico ("yyyy-MM-dd")
+     */
+    public Map<String, Long> getUnidadesPorDia() {
+        return unidades(porDia);
+    }
+
+    /**
+     * unidades por semana iso en orden cronológico ("yyyy-Www"), a partir de los días
+     */
+    public Map<String, Long> getUnidadesPorSemana() {
+        Map<String, Long> semanas = new TreeMap<>();
+        for (Map.Entry<String, Acumulado> entrada : porDia.entrySet()) {
+            LocalDate dia = LocalDate.parse(entrada.getKey());
+            String semana = String.format("%d-W%02d",
+                    dia.get(IsoFields.WEEK_BASED_YEAR), dia.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+            semanas.merge(semana, entrada.getValue().unidades, Long::sum);
+        }
+        return semanas;
+    }
+
+    private static void acumular(Map<String, Acumulado> grupos, String clave, long registros, long unidades) {
+        Acumulado acumulado = grupos.computeIfAbsent(clave, k -> new Acumulado());
+        acumulado.registros += registros;
+        acumulado.unidades += unidades;
+        if (acumulado.registros <= 0) {
+            grupos.remove(clave);
+        }
+    }
+
+    private static void combinar(Map<String, Acumulado> destino, Map<String, Acumulado> origen) {
+        for (Map.Entry<String, Acumulado> entrada : origen.entrySet()) {
+            acumular(destino, entrada.getKey(), entrada.getValue().registros, entrada.getValue().unidades);
+        }
+    }
+
+    private static Map<String, Long> unidades(Map<String, Acumulado> grupos) {
+        Map<String, Long> resultado = new LinkedHashMap<>();
+        for (Map.Entry<String, Acumulado> entrada : grupos.entrySet()) {
+            resultado.put(entrada.getKey(), entrada.getValue().unidades);
+        }
+        return resultado;
+    }
+
+    @Override
+    public String toString() {
+        return "EstadisticasInventario[registros=" + getTotalRegistros() + ", unidades=" + getTotalUnidades()
+                + ", tipos=" + porTipo.size() + ", distribuidores=" + porDistribuidor.size() + ", dias=" + porDia.size() + "]";
+    }
+}
@@ -0,0 +1,148 @@
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.TimeZone;
+
+/**
+ * fechas de registro como milisegundos de la hora local tomada como utc
+ * ("2025-03-01 10:00:00" local es el instante 2025-03-01T10:00:00Z), igual que el snapshot binario:
+ * así ordenar, comparar y agrupar por día son operaciones sobre un long y el texto
+ * "yyyy-MM-dd HH:mm:ss" solo se arma al mostrarlo o al escribir el xml
+ */
+public final class FechaRegistro {
+    // DateTimeFormatter es inmutable y seguro entre hilos: una sola instancia para toda la aplicación
+    public static final DateTimeFormatter FORMATO = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final long MS_POR_DIA = 86_400_000L;
+
+    // fecha de los registros cuyo texto falta o no se puede leer ("1970-01-01 00:00:00"):
+    // quedan al final del orden por fecha en lugar de abortar la carga de todo el archivo
+    public static final long SIN_FECHA = 0L;
+
+    private FechaRegistro() { }
+
+    /**
+     * hora actual del equipo
+     */
+    public static long ahora() {
+        long utc = System.currentTimeMillis();
+        return utc + TimeZone.getDefault().getOffset(utc);
+    }
+
+    /**
+     * texto "yyyy-MM-dd HH:mm:ss" (o "yyyy-MM-dd", que cuenta como las 00:00:00) a milisegundos
+     * el formato fijo se lee dígito a dígito sin crear objetos; cualquier otro pasa por FORMATO
+     * @throws java.time.format.DateTimeParseException si el texto no es una fecha válida
+     */
+    public static long aMillis(String texto) {
+        if (texto.length() == 10) {
+            texto = texto + " 00:00:00";
+        }
+        if (texto.length() != 19 || texto.charAt(4) != '-' || texto.charAt(7) != '-'
+                || texto.charAt(10) != ' ' || texto.charAt(13) != ':' || texto.charAt(16) != ':') {
+            return LocalDateTime.parse(texto, FORMATO).toEpochSecond(ZoneOffset.UTC) * 1000;
+        }
+        int anio = digitos(texto, 0, 4);
+        int mes = digitos(texto, 5, 2);
+        int dia = digitos(texto, 8, 2);
+        int hora = digitos(texto, 11, 2);
+        int minuto = digitos(texto, 14, 2);
+        int segundo = digitos(texto, 17, 2);
+        if (anio < 0 || mes < 1 || mes > 12 || dia < 1 || dia > diasDelMes(anio, mes) || hora < 0 || hora > 23
+                || minuto < 0 || minuto > 59 || segundo < 0 || segundo > 59) {
+            return LocalDateTime.parse(texto, FORMATO).toEpochSecond(ZoneOffset.UTC) * 1000;   // mensaje de error estándar
+        }
+        return (diaEpoch(anio, mes, dia) * 86_400L + hora * 3_600L + minuto * 60L + segundo) * 1000;
+    }
+
+    /**
+     * como aMillis, pero un texto vacío o inválido no corta la lectura: se avisa por consola con
+     * el registro afectado y se usa SIN_FECHA
+     */
+    public static long aMillisOSinFecha(String texto, int id, String nombre) {
+        if (texto == null || texto.isEmpty()) {
+            System.err.println("[fecha] registro #" + id + " '" + nombre + "' sin fecha: se usa " + texto(SIN_FECHA));
+            return SIN_FECHA;
+        }
+        try {
+            return aMillis(texto);
+        } catch (DateTimeParseException e) {
+            System.err.println("[fecha] registro #" + id + " '" + nombre + "' con fecha inválida '" + texto
+                    + "': se usa " + texto(SIN_FECHA));
+            return SIN_FECHA;
+        }
+    }
+
+    /**
+     * timestamp jdbc (hora local de la sesión) a milisegundos, sin pasar por texto
+     */
+    public static long aMillis(Timestamp fecha) {
+        long utc = fecha.getTime();
+        return utc + TimeZone.getDefault().getOffset(utc);
+    }
+
+    public static Timestamp aTimestamp(long millis) {
+        return Timestamp.valueOf(aLocalDateTime(millis));
+    }
+
+    /**
+     * "yyyy-MM-dd HH:mm:ss"
+     */
+    public static String texto(long millis) {
+        return FORMATO.format(aLocalDateTime(millis));
+    }
+
+    /**
+     * "yyyy-MM-dd" del día de la fecha
+     */
+    public static String dia(long millis) {
+        return LocalDate.ofEpochDay(Math.floorDiv(millis, MS_POR_DIA)).toString();
+    }
+
+    private static LocalDateTime aLocalDateTime(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), 0, ZoneOffset.UTC);
+    }
+
+    // -1 si alguno no es dígito
+    private static int digitos(String texto, int desde, int cantidad) {
+        int valor = 0;
+        for (int i = desde; i < desde + cantidad; i++) {
+            int digito = texto.charAt(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return -1;
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+
+    private static int diasDelMes(int anio, int mes) {
+        if (mes == 2) {
+            return esBisiesto(anio) ? 29 : 28;
+        }
+        return mes == 4 || mes == 6 || mes == 9 || mes == 11 ? 30 : 31;
+    }
+
+    private static boolean esBisiesto(long anio) {
+        return (anio % 4 == 0 && anio % 100 != 0) || anio % 400 == 0;
+    }
+
+    // días desde 1970-01-01 en el calendario gregoriano (mismo cálculo que LocalDate.toEpochDay)
+    private static long diaEpoch(int anio, int mes, int dia) {
+        long y = anio;
+        long total = 365 * y;
+        total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        total += (367 * mes - 362) / 12;
+        total += dia - 1;
+        if (mes > 2) {
+            total--;
+            if (!esBisiesto(y)) {
+                total--;
+            }
+        }
+        return total - 719_528L;   // días de 0000-01-01 a 1970-01-01
+    }
+}
@@ -0,0 +1,143 @@
+import javax.xml.stream.*;
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * lectura y escritura en streaming (stax) del formato de medicamentos.xml
+ * procesa un elemento <medicamento> a la vez, así que el consumo de memoria
+ * no depende del tamaño del archivo
+ */
+public final class FlujoXML {
+    static final String RAIZ = "medicamentos";
+    static final String MEDICAMENTO = "medicamento";
+    static final String SUCURSAL = "sucursal";
+
+    private FlujoXML() { }
+
+    /**
+     * recorre el archivo entregando cada medicamento al consumidor apenas se lee
+     * @param archivo archivo xml con raíz <medicamentos>
+     * @param consumidor receptor de cada registro
+     * @return cantidad de medicamentos leídos
+     */
+    public static int leer(File archivo, Consumer<Medicamento> consumidor) throws IOException, XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        int leidos = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(archivo))) {
+            XMLStreamReader lector = factory.createXMLStreamReader(in);
+            try {
+                while (lector.hasNext()) {
+                    if (lector.next() == XMLStreamConstants.START_ELEMENT
+                            && MEDICAMENTO.equals(lector.getLocalName())) {
+                        consumidor.accept(leerMedicamento(lector));
+                        leidos++;
+                    }
+                }
+            } finally {
+                lector.close();
+            }
+        }
+        return leidos;
+    }
+
+    /**
+     * lee solo el atributo generacion de la raíz, sin recorrer los registros
+     */
+    public static long leerGeneracion(File archivo) throws IOException, XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(archivo))) {
+            XMLStreamReader lector = factory.createXMLStreamReader(in);
+            try {
+                while (lector.hasNext()) {
+                    if (lector.next() == XMLStreamConstants.START_ELEMENT) {
+                        String gen = lector.getAttributeValue(null, "generacion");
+                        return gen == null || gen.isEmpty() ? 0 : Long.parseLong(gen);
+                    }
+                }
+                return 0;
+            } finally {
+                lector.close();
+            }
+        }
+    }
+
+    // el lector está posicionado en <medicamento>; al salir queda en su </medicamento>
+    private static Medicamento leerMedicamento(XMLStreamReader lector) throws XMLStreamException {
+        String id = atributo(lector, "id");
+        String nombre = atributo(lector, "nombre");
+        String tipo = atributo(lector, "tipo");
+        int cantidad = Integer.parseInt(atributo(lector, "cantidad"));
+        String distribuidor = atributo(lector, "distribuidor");
+        String fecha = atributo(lector, "fecha");
+
+        List<String> sucursales = new ArrayList<>();
+        while (lector.hasNext()) {
+            int evento = lector.next();
+            if (evento == XMLStreamConstants.START_ELEMENT && SUCURSAL.equals(lector.getLocalName())) {
+                sucursales.add(lector.getElementText());
+            } else if (evento == XMLStreamConstants.END_ELEMENT && MEDICAMENTO.equals(lector.getLocalName())) {
+                break;
+            }
+        }
+
+        // los archivos anteriores a los ids no traen el atributo: quedan con 0 para asignarles uno
+        return new Medicamento(id.isEmpty() ? 0 : Integer.parseInt(id), nombre, tipo, cantidad, distribuidor, sucursales, fecha);
+    }
+
+    private static String atributo(XMLStreamReader lector, String nombre) {
+        String valor = lector.getAttributeValue(null, nombre);
+        return valor == null ? "" : valor;
+    }
+
+    /**
+     * escribe todos los medicamentos con la misma indentación de dos espacios
+     * que generaba el transformer dom
+     * @param destino archivo a escribir (se sobreescribe)
+     * @param generacion valor del atributo generacion de la raíz
+     * @param medicamentos registros en el orden en que deben quedar
+     */
+    public static void escribir(File destino, long generacion, Iterable<Medicamento> medicamentos) throws IOException, XMLStreamException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(destino))) {
+            escribir(out, generacion, medicamentos);
+        }
+    }
+
+    public static void escribir(OutputStream out, long generacion, Iterable<Medicamento> medicamentos) throws XMLStreamException {
+        XMLOutputFactory factory = XMLOutputFactory.newInstance();
+        XMLStreamWriter escritor = factory.createXMLStreamWriter(out, "UTF-8");
+        try {
+            escritor.writeStartDocument("UTF-8", "1.0");
+            escritor.writeCharacters("\n");
+            escritor.writeStartElement(RAIZ);
+            escritor.writeAttribute("generacion", String.valueOf(generacion));
+
+            for (Medicamento med : medicamentos) {
+                escritor.writeCharacters("\n  ");
+                escritor.writeStartElement(MEDICAMENTO);
+                escritor.writeAttribute("id", String.valueOf(med.getId()));
+                escritor.writeAttribute("nombre", med.getNombre());
+                escritor.writeAttribute("tipo", med.getTipo());
+                escritor.writeAttribute("cantidad", String.valueOf(med.getCantidad()));
+                escritor.writeAttribute("distribuidor", med.getDistribuidor());
+                // sin pasar por getFecha: escribir no deja el texto memorizado en cada registro
+                escritor.writeAttribute("fecha", FechaRegistro.texto(med.getFechaMillis()));
+                for (String sucursal : med.getSucursales()) {
+                    escritor.writeCharacters("\n    ");
+                    escritor.writeStartElement(SUCURSAL);
+                    escritor.writeCharacters(sucursal);
+                    escritor.writeEndElement();
+                }
+                escritor.writeCharacters("\n  ");
+                escritor.writeEndElement();
+            }
+
+            escritor.writeCharacters("\n");
+            escritor.writeEndElement();
+            escritor.writeEndDocument();
+            escritor.flush();
+        } finally {
+            escritor.close();
+        }
+    }
+}
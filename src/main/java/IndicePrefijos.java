@@ -0,0 +1,120 @@
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * índice de prefijos sobre los nombres de medicamentos, sin distinguir mayúsculas ni tildes
+ * cada nombre distinto se guarda normalizado a partir del inicio de cada palabra ("acido acetilsalicilico",
+ * "acetilsalicilico"), así un prefijo de cualquier palabra (o de varias seguidas) se resuelve con
+ * un rango del árbol ordenado; como los nombres se repiten mucho, el árbol crece con la variedad
+ * de nombres y no con la cantidad de registros, y agregar un nombre ya conocido es un solo conteo
+ */
+public class IndicePrefijos {
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    private final NavigableMap<String, Set<String>> porClave = new TreeMap<>();
+    private final Map<String, Integer> usosPorNombre = new HashMap<>();   // registros con cada nombre
+
+    public void agregar(String nombre) {
+        if (usosPorNombre.merge(nombre, 1, Integer::sum) == 1) {
+            for (String clave : claves(nombre)) {
+                porClave.computeIfAbsent(clave, k -> new HashSet<>()).add(nombre);
+            }
+        }
+    }
+
+    public void eliminar(String nombre) {
+        Integer usos = usosPorNombre.get(nombre);
+        if (usos == null) {
+            return;
+        }
+        if (usos > 1) {
+            usosPorNombre.put(nombre, usos - 1);
+            return;
+        }
+        usosPorNombre.remove(nombre);
+        for (String clave : claves(nombre)) {
+            Set<String> nombres = porClave.get(clave);
+            if (nombres != null && nombres.remove(nombre) && nombres.isEmpty()) {
+                porClave.remove(clave);
+            }
+        }
+    }
+
+    public void limpiar() {
+        porClave.clear();
+        usosPorNombre.clear();
+    }
+
+    /**
+     * nombres con alguna palabra que empieza por el prefijo
+     * ("ibu" encuentra "Ibuprofeno", "acido ace" encuentra "Ácido acetilsalicílico")
+     * @param prefijo texto buscado; se normaliza igual que los nombres
+     * @return nombres tal como se agregaron, vacío si el prefijo queda vacío
+     */
+    public Set<String> buscar(String prefijo) {
+        String buscado = normalizar(prefijo);
+        if (buscado.isEmpty()) {
+            return new HashSet<>();
+        }
+        Set<String> resultado = new HashSet<>();
+        // toda clave que empieza por el prefijo queda antes que prefijo + el mayor carácter
+        for (Set<String> nombres : porClave.subMap(buscado, true, buscado + Character.MAX_VALUE, false).values()) {
+            resultado.addAll(nombres);
+        }
+        return resultado;
+    }
+
+    /**
+     * misma regla que buscar para un solo nombre, sin pasar por el índice
+     * @param prefijoNormalizado prefijo ya pasado por normalizar
+     */
+    public static boolean coincide(String nombre, String prefijoNormalizado) {
+        String normalizado = normalizar(nombre);
+        if (normalizado.startsWith(prefijoNormalizado)) {
+            return true;
+        }
+        for (int i = normalizado.indexOf(' '); i >= 0; i = normalizado.indexOf(' ', i + 1)) {
+            if (normalizado.startsWith(prefijoNormalizado, i + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * minúsculas, sin tildes ni diéresis y con los espacios colapsados
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        // la mayoría de los nombres son ascii: no hace falta descomponerlos
+        String sinMarcas = esAscii(texto) ? texto
+                : MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACIOS.matcher(sinMarcas.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean esAscii(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> claves(String nombre) {
+        String normalizado = normalizar(nombre);
+        if (normalizado.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> claves = new ArrayList<>();
+        claves.add(normalizado);
+        for (int i = normalizado.indexOf(' '); i >= 0; i = normalizado.indexOf(' ', i + 1)) {
+            claves.add(normalizado.substring(i + 1));
+        }
+        return claves;
+    }
+}
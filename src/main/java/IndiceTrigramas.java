@@ -0,0 +1,135 @@
+import java.util.*;
+
+/**
+ * índice invertido de trigramas sobre el nombre de los medicamentos
+ * cada trigrama del nombre (en minúsculas y con un marcador de inicio y fin) apunta a los
+ * nombres distintos que lo contienen; una búsqueda por subcadena intersecta las listas de los
+ * trigramas del patrón empezando por la más corta y solo confirma con contains sobre esos
+ * candidatos, en lugar de comparar el patrón contra todos los nombres
+ * los trigramas se guardan una vez por nombre distinto (como IndicePrefijos) y los registros
+ * en una cubeta por nombre, así el índice crece con el vocabulario y no con registros × largo del nombre
+ * los nombres se comparan sin tildes (como la collation _ci de mysql)
+ */
+public class IndiceTrigramas {
+    private static final int N = 3;
+    private static final char INICIO = '\u0002';
+    private static final char FIN = '\u0003';
+
+    // nombre tal como viene -> registros con ese nombre (la clave normalizada se calcula una vez por nombre)
+    private final Map<String, Set<Medicamento>> registrosPorNombre = new HashMap<>();
+    // nombre normalizado -> nombres originales que lo producen ("Ibuprofeno", "IBUPROFENO")
+    private final Map<String, Set<String>> nombresPorClave = new HashMap<>();
+    // trigrama -> nombres normalizados que lo contienen
+    private final Map<String, Set<String>> porTrigrama = new HashMap<>();
+
+    public void agregar(Medicamento med) {
+        Set<Medicamento> registros = registrosPorNombre.get(med.getNombre());
+        if (registros == null) {
+            registros = new HashSet<>();
+            registrosPorNombre.put(med.getNombre(), registros);
+            agregarNombre(med.getNombre());
+        }
+        registros.add(med);
+    }
+
+    public void eliminar(Medicamento med) {
+        Set<Medicamento> registros = registrosPorNombre.get(med.getNombre());
+        if (registros != null && registros.remove(med) && registros.isEmpty()) {
+            registrosPorNombre.remove(med.getNombre());
+            eliminarNombre(med.getNombre());
+        }
+    }
+
+    public void limpiar() {
+        registrosPorNombre.clear();
+        nombresPorClave.clear();
+        porTrigrama.clear();
+    }
+
+    private void agregarNombre(String nombre) {
+        String clave = clave(nombre);
+        Set<String> originales = nombresPorClave.get(clave);
+        if (originales == null) {
+            originales = new HashSet<>();
+            nombresPorClave.put(clave, originales);
+            for (String trigrama : trigramas(marcado(clave))) {
+                porTrigrama.computeIfAbsent(trigrama, k -> new HashSet<>()).add(clave);
+            }
+        }
+        originales.add(nombre);
+    }
+
+    private void eliminarNombre(String nombre) {
+        String clave = clave(nombre);
+        Set<String> originales = nombresPorClave.get(clave);
+        if (originales == null || !originales.remove(nombre) || !originales.isEmpty()) {
+            return;
+        }
+        nombresPorClave.remove(clave);
+        for (String trigrama : trigramas(marcado(clave))) {
+            Set<String> claves = porTrigrama.get(trigrama);
+            if (claves != null && claves.remove(clave) && claves.isEmpty()) {
+                porTrigrama.remove(trigrama);
+            }
+        }
+    }
+
+    /**
+     * medicamentos cuyo nombre contiene el patrón, sin distinguir mayúsculas
+     * los patrones de menos de tres letras se resuelven sobre los nombres distintos,
+     * que crecen con la variedad de nombres y no con la cantidad de registros
+     * @param patron subcadena buscada (no vacía)
+     * @return registros de los nombres que coinciden, sin orden definido
+     */
+    public Set<Medicamento> buscar(String patron) {
+        String buscado = clave(patron);
+        Set<Medicamento> resultado = new HashSet<>();
+        if (buscado.length() < N) {
+            for (Map.Entry<String, Set<String>> entrada : nombresPorClave.entrySet()) {
+                if (entrada.getKey().contains(buscado)) {
+                    agregarRegistros(entrada.getValue(), resultado);
+                }
+            }
+            return resultado;
+        }
+
+        List<Set<String>> listas = new ArrayList<>();
+        for (String trigrama : trigramas(buscado)) {
+            Set<String> lista = porTrigrama.get(trigrama);
+            if (lista == null) {
+                return resultado;   // un trigrama que no aparece en ningún nombre
+            }
+            listas.add(lista);
+        }
+        listas.sort(Comparator.comparingInt(Set::size));
+
+        for (String clave : listas.get(0)) {
+            if (clave.contains(buscado)) {
+                agregarRegistros(nombresPorClave.get(clave), resultado);
+            }
+        }
+        return resultado;
+    }
+
+    private void agregarRegistros(Set<String> nombres, Set<Medicamento> resultado) {
+        for (String nombre : nombres) {
+            resultado.addAll(registrosPorNombre.get(nombre));
+        }
+    }
+
+    private static String marcado(String clave) {
+        return INICIO + clave + FIN;
+    }
+
+    private static String clave(String valor) {
+        return IndicePrefijos.normalizar(valor);
+    }
+
+    private static Set<String> trigramas(String texto) {
+        Set<String> resultado = new HashSet<>();
+        for (int i = 0; i + N <= texto.length(); i++) {
+            resultado.add(texto.substring(i, i + N));
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,198 @@
+import java.util.*;
+
+/**
+ * índices secundarios en memoria sobre los medicamentos residentes
+ * hash por tipo y por distribuidor (sin distinguir mayúsculas), árbol ordenado por fecha
+ * y trigramas del nombre; las sucursales no tienen índice: con dos o tres sucursales casi
+ * cualquier máscara deja pasar una buena parte de los registros, y el and de bits sobre cada
+ * uno cuesta menos que mantener y unir cubetas por máscara;
+ * se actualizan de forma incremental en cada alta y baja, así que las consultas
+ * cuestan en proporción al resultado y no al total de registros
+ */
+public class IndicesMedicamentos {
+
+    // cada cubeta va de id a registro y conserva el orden de inserción para devolver los
+    // resultados en el orden del archivo; por id para poder reemplazar un registro sin moverlo
+    // clave = grupo de DiccionarioValores, que ya iguala mayúsculas y minúsculas
+    private final Map<Integer, Map<Integer, Medicamento>> porTipo = new HashMap<>();
+    private final Map<Integer, Map<Integer, Medicamento>> porDistribuidor = new HashMap<>();
+    // fecha en milisegundos (ver FechaRegistro); dentro de cada fecha los registros
+    // quedan ordenados por id para paginar por (fecha, id)
+    private final NavigableMap<Long, NavigableMap<Integer, Medicamento>> porFecha = new TreeMap<>();
+    private final IndiceTrigramas porNombre = new IndiceTrigramas();
+
+    public void agregar(Medicamento med) {
+        Integer id = med.getId();   // una sola caja compartida por todas las cubetas
+        cubeta(porTipo, DiccionarioValores.TIPOS.grupo(med.getCodigoTipo())).put(id, med);
+        cubeta(porDistribuidor, DiccionarioValores.DISTRIBUIDORES.grupo(med.getCodigoDistribuidor())).put(id, med);
+        porFecha.computeIfAbsent(med.getFechaMillis(), k -> new TreeMap<>()).put(id, med);
+        porNombre.agregar(med);
+    }
+
+    public void eliminar(Medicamento med) {
+        quitar(porTipo, DiccionarioValores.TIPOS.grupo(med.getCodigoTipo()), med);
+        quitar(porDistribuidor, DiccionarioValores.DISTRIBUIDORES.grupo(med.getCodigoDistribuidor()), med);
+        NavigableMap<Integer, Medicamento> mismaFecha = porFecha.get(med.getFechaMillis());
+        if (mismaFecha != null && mismaFecha.remove(med.getId()) != null && mismaFecha.isEmpty()) {
+            porFecha.remove(med.getFechaMillis());
+        }
+        porNombre.eliminar(med);
+    }
+
+    /**
+     * cambia un registro por su nueva versión (mismo id, tipo, distribuidor, sucursales, fecha
+     * y nombre; por ejemplo otra cantidad) sin alterar su posición en las cubetas
+     */
+    public void reemplazar(Medicamento anterior, Medicamento nuevo) {
+        Integer id = nuevo.getId();
+        porTipo.get(DiccionarioValores.TIPOS.grupo(nuevo.getCodigoTipo())).put(id, nuevo);
+        porDistribuidor.get(DiccionarioValores.DISTRIBUIDORES.grupo(nuevo.getCodigoDistribuidor())).put(id, nuevo);
+        porFecha.get(nuevo.getFechaMillis()).put(id, nuevo);
+        porNombre.eliminar(anterior);
+        porNombre.agregar(nuevo);
+    }
+
+    public void reconstruir(Collection<Medicamento> medicamentos) {
+        porTipo.clear();
+        porDistribuidor.clear();
+        porFecha.clear();
+        porNombre.limpiar();
+        for (Medicamento med : medicamentos) {
+            agregar(med);
+        }
+    }
+
+    public List<Medicamento> buscarPorTipo(String tipo) {
+        return new ArrayList<>(porTipo.getOrDefault(DiccionarioValores.TIPOS.grupoDe(tipo), Collections.emptyMap()).values());
+    }
+
+    public List<Medicamento> buscarPorDistribuidor(String distribuidor) {
+        return new ArrayList<>(porDistribuidor.getOrDefault(DiccionarioValores.DISTRIBUIDORES.grupoDe(distribuidor), Collections.emptyMap()).values());
+    }
+
+    /**
+     * intersección de tipo y distribuidor; recorre solo la cubeta más pequeña
+     * @param tipo tipo buscado o null para no filtrar
+     * @param distribuidor distribuidor buscado o null para no filtrar
+     * @return null si no se indicó ningún filtro (el llamador decide qué devolver)
+     */
+    public List<Medicamento> filtrar(String tipo, String distribuidor) {
+        return filtrar(tipo, distribuidor, 0);
+    }
+
+    /**
+     * como filtrar(tipo, distribuidor), además restringido a las sucursales de la máscara,
+     * que se comprueba con un and de bits sobre el resultado de esos índices
+     * @param sucursales bits de las sucursales aceptadas, 0 para no filtrar
+     * @return null si no se indicó tipo ni distribuidor: sin índice que acote, el llamador
+     *         recorre sus registros probando la máscara
+     */
+    public List<Medicamento> filtrar(String tipo, String distribuidor, int sucursales) {
+        if (tipo == null && distribuidor == null) {
+            return null;
+        }
+        List<Medicamento> resultado = filtrarTipoDistribuidor(tipo, distribuidor);
+        if (sucursales != 0) {
+            resultado.removeIf(med -> !med.estaEnSucursal(sucursales));
+        }
+        return resultado;
+    }
+
+    private List<Medicamento> filtrarTipoDistribuidor(String tipo, String distribuidor) {
+        if (tipo == null) {
+            return buscarPorDistribuidor(distribuidor);
+        }
+        if (distribuidor == null) {
+            return buscarPorTipo(tipo);
+        }
+
+        Map<Integer, Medicamento> deTipo = porTipo.getOrDefault(DiccionarioValores.TIPOS.grupoDe(tipo), Collections.emptyMap());
+        Map<Integer, Medicamento> deDistribuidor = porDistribuidor.getOrDefault(
+                DiccionarioValores.DISTRIBUIDORES.grupoDe(distribuidor), Collections.emptyMap());
+        Map<Integer, Medicamento> menor = deTipo.size() <= deDistribuidor.size() ? deTipo : deDistribuidor;
+        Map<Integer, Medicamento> mayor = menor == deTipo ? deDistribuidor : deTipo;
+
+        List<Medicamento> resultado = new ArrayList<>();
+        for (Medicamento med : menor.values()) {
+            if (mayor.containsKey(med.getId())) {
+                resultado.add(med);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * medicamentos cuyo nombre contiene el patrón, más recientes primero (mismo orden que mysql)
+     * @param patron subcadena buscada sin distinguir mayúsculas; vacía devuelve todos
+     */
+    public List<Medicamento> buscarPorNombre(String patron) {
+        List<Medicamento> resultado = new ArrayList<>();
+        if (patron == null || patron.isEmpty()) {
+            for (NavigableMap<Integer, Medicamento> mismaFecha : porFecha.descendingMap().values()) {
+                resultado.addAll(mismaFecha.descendingMap().values());
+            }
+            return resultado;
+        }
+        resultado.addAll(porNombre.buscar(patron));
+        resultado.sort(Comparator.comparingLong(Medicamento::getFechaMillis).thenComparingInt(Medicamento::getId).reversed());
+        return resultado;
+    }
+
+    /**
+     * medicamentos con fecha dentro del rango, ambos extremos incluidos y en orden cronológico
+     * @param desde fecha inicial ("yyyy-MM-dd" o "yyyy-MM-dd HH:mm:ss"), null para sin límite
+     * @param hasta fecha final en el mismo formato; una fecha sin hora cubre el día completo
+     */
+    public List<Medicamento> buscarPorRangoFecha(String desde, String hasta) {
+        NavigableMap<Long, NavigableMap<Integer, Medicamento>> rango = porFecha;
+        if (desde != null) {
+            rango = rango.tailMap(FechaRegistro.aMillis(desde), true);
+        }
+        if (hasta != null) {
+            rango = rango.headMap(FechaRegistro.aMillis(hasta.length() == 10 ? hasta + " 23:59:59" : hasta), true);
+        }
+
+        List<Medicamento> resultado = new ArrayList<>();
+        for (NavigableMap<Integer, Medicamento> mismaFecha : rango.values()) {
+            resultado.addAll(mismaFecha.values());
+        }
+        return resultado;
+    }
+
+    /**
+     * página por clave en orden (fecha desc, id desc): recorre solo las filas entregadas
+     * @param despuesDe última fila de la página anterior, o null para la primera página
+     * @param tamano filas por página
+     */
+    public List<Medicamento> pagina(CursorPagina despuesDe, int tamano) {
+        List<Medicamento> resultado = new ArrayList<>(tamano);
+        NavigableMap<Long, NavigableMap<Integer, Medicamento>> fechas = despuesDe == null
+                ? porFecha.descendingMap()
+                : porFecha.headMap(despuesDe.getFechaMillis(), true).descendingMap();
+
+        for (Map.Entry<Long, NavigableMap<Integer, Medicamento>> entrada : fechas.entrySet()) {
+            NavigableMap<Integer, Medicamento> mismaFecha = entrada.getValue();
+            if (despuesDe != null && entrada.getKey() == despuesDe.getFechaMillis()) {
+                mismaFecha = mismaFecha.headMap(despuesDe.getId(), false);
+            }
+            for (Medicamento med : mismaFecha.descendingMap().values()) {
+                if (resultado.size() == tamano) {
+                    return resultado;
+                }
+                resultado.add(med);
+            }
+        }
+        return resultado;
+    }
+
+    private static <K> Map<Integer, Medicamento> cubeta(Map<K, Map<Integer, Medicamento>> indice, K clave) {
+        return indice.computeIfAbsent(clave, k -> new LinkedHashMap<>());
+    }
+
+    private static <K> void quitar(Map<K, Map<Integer, Medicamento>> indice, K clave, Medicamento med) {
+        Map<Integer, Medicamento> cubeta = indice.get(clave);
+        if (cubeta != null && cubeta.remove(med.getId()) != null && cubeta.isEmpty()) {
+            indice.remove(clave);
+        }
+    }
+}
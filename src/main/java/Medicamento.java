@@ -1,24 +1,28 @@
-// importaciones para manejo de listas, fechas y timestamps de bases de datos
+// importaciones para manejo de listas y timestamps de bases de datos
 import java.util.List;
-import java.util.Arrays;
 import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
 
 /**
  * clase modelo que representa un medicamento en el sistema de farmacia
  * encapsula todas las propiedades y comportamientos de un medicamento
  * soporta múltiples formatos de inicialización (xml y mysql)
+ * es inmutable: los cambios de id o cantidad crean un registro nuevo (conId, conCantidad),
+ * así puede compartirse entre hilos, cachés e índices sin copiarlo (fechaTexto es solo una
+ * cache del texto de la fecha, ver getFecha)
  */
-public class Medicamento {
+public final class Medicamento {
     
     // ===================== atributos principales del medicamento =====================
     
-    private String nombre;              // nombre comercial o genérico del medicamento
-    private String tipo;                // categoría farmacológica (analgésico, antibiótico, etc.)
-    private int cantidad;               // unidades disponibles en inventario
-    private String distribuidor;        // empresa distribuidora (cofarma, empsephar, cemefar)
-    private List<String> sucursales;    // lista de sucursales donde está disponible
-    private String fecha;               // fecha de registro en formato legible
+    private final int id;                     // identificador estable del registro (0 = aún sin asignar)
+    private final String nombre;              // nombre comercial o genérico del medicamento
+    private final int tipo;                   // categoría farmacológica (analgésico, antibiótico, etc.), código de DiccionarioValores.TIPOS
+    private final int cantidad;               // unidades disponibles en inventario
+    private final int distribuidor;           // empresa distribuidora (cofarma, empsephar, cemefar), código de DiccionarioValores.DISTRIBUIDORES
+    private final List<String> sucursales;    // lista inmutable, compartida entre registros (ver Sucursales.canonica)
+    private final int mascaraSucursales;      // las mismas sucursales como bits (ver Sucursales)
+    private final long fechaMillis;           // fecha de registro (ver FechaRegistro)
+    private String fechaTexto;                // getFecha() ya formateado; se arma solo si se pide
     
     /**
      * constructor principal para inicialización completa desde xml
@@ -27,20 +31,40 @@ public class Medicamento {
      * @param cantidad unidades en inventario
      * @param distribuidor empresa distribuidora
      * @param sucursales lista de sucursales disponibles
-     * @param fecha fecha de registro como string
+     * @param fecha fecha de registro como string (vacía o inválida: FechaRegistro.SIN_FECHA, con aviso)
      */
     public Medicamento(String nombre, String tipo, int cantidad, String distribuidor, List<String> sucursales, String fecha) {
-        this.nombre = nombre;
-        this.tipo = tipo;
-        this.cantidad = cantidad;
-        this.distribuidor = distribuidor;
-        this.sucursales = sucursales;
-        this.fecha = fecha;
+        this(0, nombre, tipo, cantidad, distribuidor, sucursales, fecha);
+    }
+    
+    /**
+     * constructor completo con identificador, usado por los almacenamientos que ya lo asignaron
+     * @param id identificador estable del registro
+     * @param nombre nombre del medicamento
+     * @param tipo categoría farmacológica
+     * @param cantidad unidades en inventario
+     * @param distribuidor empresa distribuidora
+     * @param sucursales lista de sucursales disponibles
+     * @param fecha fecha de registro como string "yyyy-MM-dd HH:mm:ss"; vacía o inválida queda
+     *              FechaRegistro.SIN_FECHA con un aviso por consola (un registro dañado no corta la carga)
+     */
+    public Medicamento(int id, String nombre, String tipo, int cantidad, String distribuidor, List<String> sucursales, String fecha) {
+        this(id, nombre, tipo, cantidad, distribuidor, sucursales, FechaRegistro.aMillisOSinFecha(fecha, id, nombre));
+    }
+    
+    /**
+     * constructor con la fecha ya en milisegundos (snapshot binario, altas nuevas)
+     * @param fechaMillis fecha de registro según FechaRegistro
+     */
+    public Medicamento(int id, String nombre, String tipo, int cantidad, String distribuidor, List<String> sucursales, long fechaMillis) {
+        this(id, nombre, DiccionarioValores.TIPOS.codigo(tipo), cantidad, DiccionarioValores.DISTRIBUIDORES.codigo(distribuidor),
+                Sucursales.canonica(sucursales), fechaMillis);
     }
     
     /**
      * constructor especializado para datos provenientes de mysql
-     * convierte timestamp a formato string y procesa sucursales concatenadas
+     * toma el timestamp sin formatearlo y comparte la lista de sucursales entre filas iguales
+     * @param id clave primaria de la fila
      * @param nombre nombre del medicamento
      * @param tipo categoría farmacológica
      * @param cantidad unidades en inventario
@@ -48,41 +72,85 @@ public class Medicamento {
      * @param sucursalesString sucursales como string separado por comas
      * @param fecha timestamp de mysql
      */
-    public Medicamento(String nombre, String tipo, int cantidad, String distribuidor, String sucursalesString, Timestamp fecha) {
+    public Medicamento(int id, String nombre, String tipo, int cantidad, String distribuidor, String sucursalesString, Timestamp fecha) {
+        this(id, nombre, DiccionarioValores.TIPOS.codigo(tipo), cantidad, DiccionarioValores.DISTRIBUIDORES.codigo(distribuidor),
+                Sucursales.desdeTexto(sucursalesString), FechaRegistro.aMillis(fecha));
+    }
+    
+    // campos ya codificados y lista ya canónica (o una copia inmutable): no se vuelven a revisar
+    private Medicamento(int id, String nombre, int tipo, int cantidad, int distribuidor, List<String> sucursales,
+                        long fechaMillis) {
+        this.id = id;
         this.nombre = nombre;
         this.tipo = tipo;
         this.cantidad = cantidad;
         this.distribuidor = distribuidor;
-        // convertir string de sucursales separadas por comas a lista
-        this.sucursales = Arrays.asList(sucursalesString.split(", "));
-        // formatear timestamp a string legible
-        this.fecha = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(fecha);
+        this.sucursales = sucursales;
+        this.mascaraSucursales = Sucursales.mascara(sucursales);
+        this.fechaMillis = fechaMillis;
     }
     
     // getters
+    public int getId() { return id; }
     public String getNombre() { return nombre; }
-    public String getTipo() { return tipo; }
+    public String getTipo() { return DiccionarioValores.TIPOS.valor(tipo); }
     public int getCantidad() { return cantidad; }
-    public String getDistribuidor() { return distribuidor; }
+    public String getDistribuidor() { return DiccionarioValores.DISTRIBUIDORES.valor(distribuidor); }
+    public int getCodigoTipo() { return tipo; }
+    public int getCodigoDistribuidor() { return distribuidor; }
     public List<String> getSucursales() { return sucursales; }
-    public String getFecha() { return fecha;     }
+    public long getFechaMillis() { return fechaMillis; }
+    public int getMascaraSucursales() { return mascaraSucursales; }
+    
+    /**
+     * fecha como "yyyy-MM-dd HH:mm:ss"; se formatea la primera vez que se pide
+     * fechaTexto no es volatile a propósito: dos hilos pueden formatear a la vez y uno puede no ver
+     * el texto del otro, pero ambos calculan el mismo valor a partir de fechaMillis (final), y String
+     * es inmutable con campos final, así que leer la referencia sin sincronizar nunca muestra un texto
+     * a medio construir; lo peor que pasa es formatear dos veces
+     */
+    public String getFecha() {
+        String texto = fechaTexto;
+        if (texto == null) {
+            texto = FechaRegistro.texto(fechaMillis);
+            fechaTexto = texto;
+        }
+        return texto;
+    }
     
-    // setters
-    public void setNombre(String nombre) { this.nombre = nombre; }
-    public void setTipo(String tipo) { this.tipo = tipo; }
-    public void setCantidad(int cantidad) { this.cantidad = cantidad; }
-    public void setDistribuidor(String distribuidor) { this.distribuidor = distribuidor; }
-    public void setSucursales(List<String> sucursales) { this.sucursales = sucursales; }
-    public void setFecha(String fecha) { this.fecha = fecha; }
+    // ===================== copias modificadas =====================
+    
+    /**
+     * el mismo registro con otro identificador
+     */
+    public Medicamento conId(int nuevoId) {
+        return nuevoId == id ? this
+                : new Medicamento(nuevoId, nombre, tipo, cantidad, distribuidor, sucursales, fechaMillis);
+    }
+    
+    /**
+     * el mismo registro con otra cantidad
+     */
+    public Medicamento conCantidad(int nuevaCantidad) {
+        return nuevaCantidad == cantidad ? this
+                : new Medicamento(id, nombre, tipo, nuevaCantidad, distribuidor, sucursales, fechaMillis);
+    }
     
     @Override
     public String toString() {
-        return String.format("Medicamento: %s (%s) - %d unidades - Distribuidor: %s - Fecha: %s", 
-                           nombre, tipo, cantidad, distribuidor, fecha);
+        return String.format("Medicamento #%d: %s (%s) - %d unidades - Distribuidor: %s - Fecha: %s", 
+                           id, nombre, getTipo(), cantidad, getDistribuidor(), getFecha());
+    }
+    
+    /**
+     * indica si está disponible en alguna de las sucursales de la máscara
+     */
+    public boolean estaEnSucursal(int bits) {
+        return (mascaraSucursales & bits) != 0;
     }
     
     public String getSucursalesString() {
-        if (sucursales == null || sucursales.isEmpty()) {
+        if (sucursales.isEmpty()) {
             return "Ninguna";
         }
         return String.join(", ", sucursales);
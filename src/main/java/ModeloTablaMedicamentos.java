@@ -0,0 +1,267 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+
+/**
+ * modelo de la tabla de registros que lee directamente de la lista de medicamentos
+ * las celdas se calculan al pintarse (solo las filas visibles) en lugar de copiarse a
+ * vectores por fila, y cada tanda de filas nuevas dispara un único evento
+ * mantiene además el índice de prefijos de los nombres cargados para la búsqueda del panel
+ * pasadas registros.maxFilasEnHeap filas (xml.properties o mysql.properties), los registros se mudan
+ * a un AlmacenFueraDeHeap y solo se arman objetos para las filas que se pintan o se filtran; así el
+ * heap que ocupa la tabla queda acotado aunque se recorra todo el historial (el panel no usa ordenador
+ * con las filas fuera del heap: crearía un objeto por fila y cada comparación armaría de nuevo los
+ * medicamentos)
+ * solo cubre las filas de la tabla: el almacenamiento xml sigue guardando en el heap sus registros,
+ * índices y estadísticas, así que con ese modo el heap total crece con el historial igual
+ */
+public class ModeloTablaMedicamentos extends AbstractTableModel {
+    private static final String[] COLUMNAS = {"Nombre", "Tipo", "Cantidad", "Distribuidor", "Sucursales", "Fecha"};
+    public static final int COLUMNA_FECHA = 5;
+
+    private static final int MAX_FILAS_EN_HEAP = Configuracion.entero("registros.maxFilasEnHeap", 100_000);
+
+    private List<Medicamento> filas = new ArrayList<>();
+    private final BitSet ids = new BitSet();   // ids presentes, para no repetir filas (un bit por id)
+    private final IndicePrefijos nombres = new IndicePrefijos();
+
+    // fuera del heap cada get arma un objeto: la tabla pide varias celdas y filtros seguidos de la misma fila
+    private int ultimaFila = -1;
+    private Medicamento ultimoMedicamento;
+
+    // filas que se guardan como objetos antes de mudarse fuera del heap
+    public static int maxFilasEnHeap() {
+        return MAX_FILAS_EN_HEAP;
+    }
+
+    @Override
+    public int getRowCount() {
+        return filas.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNAS.length;
+    }
+
+    @Override
+    public String getColumnName(int columna) {
+        return COLUMNAS[columna];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columna) {
+        // la cantidad ordena como número y no como texto ("10" antes que "9");
+        // la fecha va como milisegundos: ordena comparando longs y solo se formatea al pintarla
+        switch (columna) {
+            case 2: return Integer.class;
+            case COLUMNA_FECHA: return Long.class;
+            default: return String.class;
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int fila, int columna) {
+        return false; // hacer la tabla no editable
+    }
+
+    @Override
+    public Object getValueAt(int fila, int columna) {
+        Medicamento med = getMedicamento(fila);
+        switch (columna) {
+            case 0: return med.getNombre();
+            case 1: return med.getTipo();
+            case 2: return med.getCantidad();
+            case 3: return med.getDistribuidor();
+            case 4: return med.getSucursalesString();
+            case COLUMNA_FECHA: return med.getFechaMillis();
+            default: return null;
+        }
+    }
+
+    public Medicamento getMedicamento(int fila) {
+        if (fila != ultimaFila) {
+            ultimoMedicamento = filas.get(fila);
+            ultimaFila = fila;
+        }
+        return ultimoMedicamento;
+    }
+
+    public boolean contiene(int id) {
+        return id > 0 && ids.get(id);
+    }
+
+    /**
+     * true si las filas ya se guardan fuera del heap
+     */
+    public boolean isFueraDeHeap() {
+        return filas instanceof AlmacenFueraDeHeap;
+    }
+
+    /**
+     * nombres de las filas cargadas con alguna palabra que empieza por el prefijo (sin tildes ni mayúsculas)
+     */
+    public Set<String> buscarPorPrefijo(String prefijo) {
+        return nombres.buscar(prefijo);
+    }
+
+    public void limpiar() {
+        filas = new ArrayList<>();   // los segmentos directos, si los había, se liberan cuando el recolector los descarte
+        olvidarUltima();
+        ids.clear();
+        nombres.limpiar();
+        fireTableDataChanged();
+    }
+
+    /**
+     * agrega al final los medicamentos que aún no están, con un solo evento de inserción
+     */
+    public void agregar(List<Medicamento> medicamentos) {
+        int inicio = filas.size();
+        for (Medicamento med : medicamentos) {
+            if (marcar(med.getId())) {
+                filas.add(med);
+                nombres.agregar(med.getNombre());
+            }
+        }
+        olvidarUltima();
+        mudarSiHaceFalta();
+        if (filas.size() > inicio) {
+            fireTableRowsInserted(inicio, filas.size() - 1);
+        }
+    }
+
+    /**
+     * agrega arriba los medicamentos que aún no están; el último de la lista queda primero
+     * (las altas llegan en orden de id y la vista muestra primero lo más reciente)
+     */
+    public void agregarAlInicio(List<Medicamento> medicamentos) {
+        List<Medicamento> nuevos = new ArrayList<>();
+        for (Medicamento med : medicamentos) {
+            if (marcar(med.getId())) {
+                nuevos.add(med);
+                nombres.agregar(med.getNombre());
+            }
+        }
+        if (!nuevos.isEmpty()) {
+            Collections.reverse(nuevos);
+            filas.addAll(0, nuevos);
+            olvidarUltima();
+            mudarSiHaceFalta();
+            fireTableRowsInserted(0, nuevos.size() - 1);
+        }
+    }
+
+    /**
+     * quita las filas de los ids indicados que estén presentes
+     * la lista se compacta en una sola pasada y se dispara un único evento: el borrado del tramo
+     * si las filas quitadas son contiguas, o un cambio general si están salteadas (un evento por
+     * fila obligaría al ordenador y a la vista a rehacerse miles de veces)
+     */
+    public void eliminar(Collection<Integer> idsEliminados) {
+        BitSet pendientes = new BitSet();
+        for (Integer id : idsEliminados) {
+            if (contiene(id)) {
+                ids.clear(id);
+                pendientes.set(id);
+            }
+        }
+        int restantes = pendientes.cardinality();
+        if (restantes == 0) {
+            return;
+        }
+        BitSet quitadas = new BitSet();
+        for (int fila = 0; fila < filas.size() && restantes > 0; fila++) {
+            if (pendientes.get(idEn(fila))) {
+                quitadas.set(fila);
+                nombres.eliminar(filas.get(fila).getNombre());
+                restantes--;
+            }
+        }
+        if (quitadas.isEmpty()) {
+            return;
+        }
+        compactar(quitadas);
+        olvidarUltima();
+
+        int primera = quitadas.nextSetBit(0);
+        int ultima = quitadas.length() - 1;
+        if (quitadas.cardinality() == ultima - primera + 1) {
+            fireTableRowsDeleted(primera, ultima);
+        } else {
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * pone la versión nueva de los medicamentos que están en la tabla (los demás se ignoran), con
+     * un solo evento de actualización que abarca de la primera a la última fila cambiada
+     */
+    public void reemplazar(List<Medicamento> medicamentos) {
+        Map<Integer, Medicamento> pendientes = new HashMap<>();
+        for (Medicamento med : medicamentos) {
+            if (contiene(med.getId())) {
+                pendientes.put(med.getId(), med);
+            }
+        }
+        int primera = -1;
+        int ultima = -1;
+        for (int fila = 0; fila < filas.size() && !pendientes.isEmpty(); fila++) {
+            Medicamento nuevo = pendientes.remove(idEn(fila));
+            if (nuevo != null) {
+                nombres.eliminar(filas.get(fila).getNombre());
+                nombres.agregar(nuevo.getNombre());
+                filas.set(fila, nuevo);
+                if (primera < 0) primera = fila;
+                ultima = fila;
+            }
+        }
+        if (primera >= 0) {
+            olvidarUltima();
+            fireTableRowsUpdated(primera, ultima);
+        }
+    }
+
+    // quita las filas marcadas moviendo cada fila que queda a lo sumo una vez
+    private void compactar(BitSet quitadas) {
+        if (isFueraDeHeap()) {
+            ((AlmacenFueraDeHeap) filas).quitarFilas(quitadas);
+            return;
+        }
+        int destino = quitadas.nextSetBit(0);
+        for (int origen = destino + 1; origen < filas.size(); origen++) {
+            if (!quitadas.get(origen)) {
+                filas.set(destino++, filas.get(origen));
+            }
+        }
+        filas.subList(destino, filas.size()).clear();
+    }
+
+    // true si el id no estaba
+    private boolean marcar(int id) {
+        if (id <= 0 || ids.get(id)) {
+            return false;
+        }
+        ids.set(id);
+        return true;
+    }
+
+    private int idEn(int fila) {
+        return isFueraDeHeap() ? ((AlmacenFueraDeHeap) filas).getId(fila) : filas.get(fila).getId();
+    }
+
+    private void olvidarUltima() {
+        ultimaFila = -1;
+        ultimoMedicamento = null;
+    }
+
+    private void mudarSiHaceFalta() {
+        if (isFueraDeHeap() || filas.size() <= MAX_FILAS_EN_HEAP) {
+            return;
+        }
+        AlmacenFueraDeHeap fueraDeHeap = new AlmacenFueraDeHeap();
+        fueraDeHeap.addAll(filas);
+        filas = fueraDeHeap;
+        System.out.println("[Registros] " + filas.size() + " filas pasan a memoria fuera del heap ("
+                + fueraDeHeap.bytesFueraDeHeap() / (1024 * 1024) + " MB reservados)");
+    }
+}
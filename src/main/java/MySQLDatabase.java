@@ -1,14 +1,18 @@
 
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
 import java.io.*;
+import java.time.format.DateTimeParseException;
 // importaciones necesarias para conexión jdbc, manejo de datos y archivos
 /**
  * clase para manejo de persistencia en base de datos mysql
  * implementa patrón autocloseable para gestión automática de recursos
  * incluye reconexión automática, creación de base de datos y configuración flexible
+ * las conexiones se toman de un pool acotado (PoolConexiones), así las lecturas
+ * concurrentes no se serializan sobre un único socket
  */
-public class MySQLDatabase implements AutoCloseable {
+public class MySQLDatabase implements RepositorioMedicamentos {
     
     // ===================== configuración de conexión mysql =====================
     
@@ -19,11 +23,28 @@ public class MySQLDatabase implements AutoCloseable {
     private int maxReconnectAttempts = 3;               // intentos máximos de reconexión
     private long reconnectBackoffMs = 1500L;            // tiempo de espera entre reintentos (ms)
     private boolean autoCreateDatabase = true;          // crear automáticamente la base si no existe
+    private int poolMaxConexiones = 8;                  // conexiones abiertas como máximo
+    private long poolTimeoutMs = 10000L;                // espera máxima para obtener una conexión
+    private long poolMaxOciosaMs = 300000L;             // cierre de conexiones libres sin uso (5 min)
+    private long poolVidaMaximaMs = 1800000L;           // edad máxima de una conexión física (30 min)
+    private long poolValidarTrasMs = 1000L;             // ociosidad a partir de la cual se valida al prestar
+    private int tamanoLote = 500;                       // filas por transacción en las altas en lote
+    private boolean busquedaFullText = true;            // buscar por nombre con el índice fulltext ngram
+    private int retencionBajasDias = 7;                 // días que se conservan las bajas para los cursores de cambios
 
     // ===================== gestión de conexión y estado =====================
     
-    private Connection connection;              // conexión activa a la base de datos
+    private PoolConexiones pool;                // pool de conexiones a la base de datos
     private boolean tablaVerificada = false;   // flag para evitar verificaciones repetidas de tabla
+    private boolean indiceFullText = false;    // ft_nombre existe y el servidor soporta el parser ngram
+    private int tamanoNgram = 2;               // ngram_token_size del servidor
+    private static final String INDICE_SIN_STOPWORDS = "ngram sin stopwords";   // comentario de ft_nombre
+    private static final String MASCARA_CALCULADA = "mascara calculada";       // comentario de sucursales_mask
+    private static final String SQL_INSERTAR = "INSERT INTO medicamentos " +
+            "(nombre, tipo, cantidad, distribuidor, sucursales, sucursales_mask, alta, cambio) VALUES (?, ?, ?, ?, ?, ?, 0, 0)";
+    private boolean saltarBloqueadas = true;        // el servidor acepta FOR UPDATE SKIP LOCKED (mysql 8)
+    private EstadisticasInventario estadisticas;   // agregados en cache (null = recalcular)
+    private long marcaEstadisticas = 0;             // secuencia de cambios hasta la que llega la cache
 
     /**
      * constructor por defecto que utiliza configuración estándar
@@ -49,8 +70,9 @@ public class MySQLDatabase implements AutoCloseable {
             // cargar driver jdbc de mysql
             Class.forName("com.mysql.cj.jdbc.Driver");
             
-            // establecer conexión con sistema de reintentos automáticos
-            conectarConReintentos();
+            // crear el pool; cada conexión física se establece con reintentos automáticos
+            pool = new PoolConexiones(this::conectarConReintentos, poolMaxConexiones, poolTimeoutMs,
+                    poolMaxOciosaMs, poolVidaMaximaMs, poolValidarTrasMs);
             
             // verificar/crear estructura de tabla necesaria
             crearTablaSiNoExiste();
@@ -60,8 +82,18 @@ public class MySQLDatabase implements AutoCloseable {
             logError("no se pudo cargar el driver mysql (mysql-connector)", e);
         } catch (SQLException e) {
             logError("error sql inicializando conexión", e);
+            descartarPool();
         } catch (Exception e) {
             logError("error inesperado inicializando mysqldatabase", e);
+            descartarPool();
+        }
+    }
+
+    // sin servidor alcanzable no se conserva el pool: isConectado responde de inmediato
+    private void descartarPool() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
         }
     }
 
@@ -92,26 +124,44 @@ public class MySQLDatabase implements AutoCloseable {
         maxReconnectAttempts = Integer.parseInt(props.getProperty("mysql.maxReconnectAttempts", String.valueOf(maxReconnectAttempts)));
         reconnectBackoffMs = Long.parseLong(props.getProperty("mysql.reconnectBackoffMs", String.valueOf(reconnectBackoffMs)));
         autoCreateDatabase = Boolean.parseBoolean(props.getProperty("mysql.autoCreateDatabase", String.valueOf(autoCreateDatabase)));
+        poolMaxConexiones = Integer.parseInt(props.getProperty("mysql.pool.maxConexiones", String.valueOf(poolMaxConexiones)));
+        poolTimeoutMs = Long.parseLong(props.getProperty("mysql.pool.timeoutMs", String.valueOf(poolTimeoutMs)));
+        poolMaxOciosaMs = Long.parseLong(props.getProperty("mysql.pool.maxOciosaMs", String.valueOf(poolMaxOciosaMs)));
+        poolVidaMaximaMs = Long.parseLong(props.getProperty("mysql.pool.vidaMaximaMs", String.valueOf(poolVidaMaximaMs)));
+        poolValidarTrasMs = Long.parseLong(props.getProperty("mysql.pool.validarTrasMs", String.valueOf(poolValidarTrasMs)));
+        tamanoLote = Integer.parseInt(props.getProperty("mysql.batchSize", String.valueOf(tamanoLote)));
+        busquedaFullText = Boolean.parseBoolean(props.getProperty("mysql.busquedaFullText", String.valueOf(busquedaFullText)));
+        retencionBajasDias = Integer.parseInt(props.getProperty("mysql.bajas.retencionDias", String.valueOf(retencionBajasDias)));
     }
 
-    private void conectar() throws SQLException {
+    private Connection conectar() throws SQLException {
         System.out.println("[MySQL][CONNECT] Intentando conectar a: " + url);
         try {
-            connection = DriverManager.getConnection(url, username, password);
+            Connection nueva = DriverManager.getConnection(urlConexion(), username, password);
             System.out.println("[MySQL][CONNECT] Conexión establecida OK");
+            return nueva;
         } catch (SQLException e) {
             if (autoCreateDatabase && e.getMessage() != null && e.getMessage().contains("Unknown database")) {
                 System.err.println("[MySQL][CONNECT] Base de datos no existe. Intentando crearla...");
                 crearBaseDatosSiNoExiste();
                 // reintentar
-                connection = DriverManager.getConnection(url, username, password);
+                Connection nueva = DriverManager.getConnection(urlConexion(), username, password);
                 System.out.println("[MySQL][CONNECT] Conectado tras crear base de datos");
+                return nueva;
             } else {
                 throw e;
             }
         }
     }
 
+    // el driver solo convierte los lotes en inserts multi-fila si rewriteBatchedStatements está activo
+    private String urlConexion() {
+        if (url.contains("rewriteBatchedStatements")) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+    }
+
     private void crearBaseDatosSiNoExiste() {
         try {
             // Extraer nombre de la base de datos de la URL
@@ -134,12 +184,11 @@ public class MySQLDatabase implements AutoCloseable {
         }
     }
 
-    private void conectarConReintentos() throws SQLException {
+    private Connection conectarConReintentos() throws SQLException {
         int intentos = 0;
         while (true) {
             try {
-                conectar();
-                break;
+                return conectar();
             } catch (SQLException e) {
                 intentos++;
                 if (intentos >= maxReconnectAttempts) throw e;
@@ -159,75 +208,286 @@ public class MySQLDatabase implements AutoCloseable {
                 "cantidad INT NOT NULL," +
                 "distribuidor VARCHAR(100) NOT NULL," +
                 "sucursales TEXT NOT NULL," +
+                "sucursales_mask TINYINT UNSIGNED NOT NULL DEFAULT 0 COMMENT '" + MASCARA_CALCULADA + "'," +
                 "fecha TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "alta BIGINT NOT NULL DEFAULT 0," +
+                "cambio BIGINT NOT NULL DEFAULT 0," +
                 "INDEX idx_nombre (nombre)," +
                 "INDEX idx_tipo (tipo)," +
                 "INDEX idx_distribuidor (distribuidor)," +
-                "INDEX idx_fecha (fecha)" +
+                "INDEX idx_fecha (fecha)," +
+                "INDEX idx_sucursales (sucursales_mask)," +
+                "INDEX idx_cambio (cambio)" +
                 ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci";
 
-        try (Statement stmt = connection.createStatement()) {
+        try (Connection conn = pool.obtener(); Statement stmt = conn.createStatement()) {
             stmt.execute(sql);
             tablaVerificada = true;
             System.out.println("[MySQL] Tabla 'medicamentos' lista");
+            migrarMascaraSucursales(conn);
+            asegurarIndiceFullText(conn);
+            crearSecuenciaCambios(stmt);
+            migrarColumnasCambio(conn);
+            crearRegistroBajas(stmt);
         }
     }
 
-    private void asegurarConexion() {
-        try {
-            if (connection == null || connection.isClosed()) {
-                System.out.println("[MySQL][CHECK] Conexión nula o cerrada. Reintentando...");
-                conectarConReintentos();
+    // secuencia de cambios: los escritores no la tocan ni toman ningún candado común, confirman sus
+    // filas con cambio = 0 y el siguiente lector las numera (ver sellarCambios)
+    // 'cambio' es el último número repartido y 'purgado' el mayor número de una baja ya purgada
+    private void crearSecuenciaCambios(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS secuencia_cambios (" +
+                "nombre VARCHAR(10) PRIMARY KEY," +
+                "valor BIGINT NOT NULL" +
+                ") ENGINE=InnoDB");
+        stmt.executeUpdate("INSERT IGNORE INTO secuencia_cambios (nombre, valor) VALUES ('cambio', 1), ('purgado', 0)");
+    }
+
+    // alta = número de cambio con que se vio la fila por primera vez, cambio = el de su última escritura
+    // (0 en ambos mientras ningún lector la selló); las tablas anteriores reciben las columnas con 1,
+    // es decir como filas ya vistas, y después el valor por defecto vuelve a 0
+    private void migrarColumnasCambio(Connection conn) throws SQLException {
+        String existe = "SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = 'medicamentos' AND column_name = 'cambio'";
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(existe)) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+            stmt.execute("ALTER TABLE medicamentos ADD COLUMN alta BIGINT NOT NULL DEFAULT 1, " +
+                    "ADD COLUMN cambio BIGINT NOT NULL DEFAULT 1, ADD INDEX idx_cambio (cambio)");
+            stmt.execute("ALTER TABLE medicamentos ALTER COLUMN alta SET DEFAULT 0, ALTER COLUMN cambio SET DEFAULT 0");
+            System.out.println("[MySQL] Columnas 'alta' y 'cambio' agregadas");
+        }
+    }
+
+    // cada baja hecha por la aplicación deja aquí el id eliminado y el número de alta que tenía la fila;
+    // la baja recibe su propio número de cambio al sellarse, igual que las filas de medicamentos
+    // así obtenerCambiosDesde informa bajas sin comparar tablas completas
+    private void crearRegistroBajas(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS medicamentos_eliminados (" +
+                "secuencia BIGINT AUTO_INCREMENT PRIMARY KEY," +
+                "id_medicamento INT NOT NULL," +
+                "alta BIGINT NOT NULL DEFAULT 0," +
+                "cambio BIGINT NOT NULL DEFAULT 0," +
+                "eliminado TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "INDEX idx_eliminado (eliminado)," +
+                "INDEX idx_cambio (cambio)" +
+                ") ENGINE=InnoDB");
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() " +
+                "AND table_name = 'medicamentos_eliminados' AND column_name = 'cambio'")) {
+            rs.next();
+            if (rs.getInt(1) == 0) {
+                // bajas anteriores: ya vistas (cambio 1) y sin alta conocida, no se vuelven a informar
+                stmt.execute("ALTER TABLE medicamentos_eliminados ADD COLUMN alta BIGINT NOT NULL DEFAULT 0, " +
+                        "ADD COLUMN cambio BIGINT NOT NULL DEFAULT 1, ADD INDEX idx_cambio (cambio)");
+                stmt.execute("ALTER TABLE medicamentos_eliminados ALTER COLUMN cambio SET DEFAULT 0");
+            }
+        }
+        // antes de purgar se anota hasta qué número llegan las bajas perdidas: un cursor anterior
+        // a ese número ya no puede enterarse de todas y recibe recarga completa
+        String antiguas = "eliminado < NOW() - INTERVAL " + retencionBajasDias + " DAY AND cambio > 0";
+        stmt.executeUpdate("UPDATE secuencia_cambios SET valor = GREATEST(valor, " +
+                "(SELECT COALESCE(MAX(cambio), 0) FROM medicamentos_eliminados WHERE " + antiguas + ")) WHERE nombre = 'purgado'");
+        int purgadas = stmt.executeUpdate("DELETE FROM medicamentos_eliminados WHERE " + antiguas);
+        if (purgadas > 0) {
+            System.out.println("[MySQL] Purgadas " + purgadas + " bajas antiguas del registro de cambios");
+        }
+    }
+
+    // las tablas anteriores solo tienen el texto "Principal, Secundaria": se agrega la columna
+    // sucursales_mask con su índice y se calcula para las filas existentes una única vez; al terminar
+    // el cálculo se deja MASCARA_CALCULADA como comentario de la columna (igual que ft_nombre con
+    // INDICE_SIN_STOPWORDS) y los arranques siguientes solo leen ese comentario. si el cálculo se
+    // corta, el comentario no queda y se repite en el próximo arranque
+    // después cada alta guarda su propia máscara (una versión anterior de la aplicación escribiendo
+    // en la misma tabla dejaría 0)
+    private void migrarMascaraSucursales(Connection conn) throws SQLException {
+        String existe = "SELECT column_comment FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = 'medicamentos' AND column_name = 'sucursales_mask'";
+        String columna = "sucursales_mask TINYINT UNSIGNED NOT NULL DEFAULT 0";
+        try (Statement stmt = conn.createStatement()) {
+            boolean hayColumna = false;
+            try (ResultSet rs = stmt.executeQuery(existe)) {
+                if (rs.next()) {
+                    if (MASCARA_CALCULADA.equals(rs.getString(1))) {
+                        return;
+                    }
+                    hayColumna = true;
+                }
+            }
+            if (!hayColumna) {
+                stmt.execute("ALTER TABLE medicamentos ADD COLUMN " + columna + " AFTER sucursales, " +
+                        "ADD INDEX idx_sucursales (sucursales_mask)");
+                System.out.println("[MySQL] Columna 'sucursales_mask' agregada");
+            }
+
+            StringBuilder mascara = new StringBuilder();
+            for (String sucursal : Sucursales.todas()) {
+                if (mascara.length() > 0) mascara.append(" | ");
+                mascara.append("(FIND_IN_SET('").append(sucursal).append("', REPLACE(sucursales, ', ', ',')) > 0) * ")
+                        .append(Sucursales.bit(sucursal));
+            }
+            int migradas = stmt.executeUpdate("UPDATE medicamentos SET sucursales_mask = " + mascara +
+                    " WHERE sucursales_mask = 0");
+            // cambiar solo el comentario no reescribe la tabla
+            stmt.execute("ALTER TABLE medicamentos MODIFY COLUMN " + columna + " COMMENT '" + MASCARA_CALCULADA + "'");
+            System.out.println("[MySQL] Máscara de sucursales calculada para " + migradas + " filas");
+        }
+    }
+
+    // un like '%patron%' no puede usar idx_nombre; el índice fulltext con parser ngram sí indexa subcadenas
+    // va aparte del create table para agregarlo también a tablas ya existentes y para que un servidor
+    // sin parser ngram (por ejemplo mariadb) siga funcionando con like
+    // el índice se crea sin stopwords: con la lista por defecto de innodb el parser ngram descarta todo
+    // token que contenga "a", "i", "de"... y MATCH no encuentra filas que el like sí encontraba;
+    // la configuración de stopwords queda fijada al crear el índice, así que uno creado por una versión
+    // anterior (sin el comentario INDICE_SIN_STOPWORDS) se vuelve a crear
+    private void asegurarIndiceFullText(Connection conn) {
+        if (!busquedaFullText) return;
+        String existe = "SELECT index_comment FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = 'medicamentos' AND index_name = 'ft_nombre' LIMIT 1";
+        try (Statement stmt = conn.createStatement()) {
+            String comentario = null;
+            boolean hayIndice = false;
+            try (ResultSet rs = stmt.executeQuery(existe)) {
+                if (rs.next()) {
+                    hayIndice = true;
+                    comentario = rs.getString(1);
+                }
+            }
+            if (!hayIndice || !INDICE_SIN_STOPWORDS.equals(comentario)) {
+                stmt.execute("SET SESSION innodb_ft_enable_stopword = OFF");
+                try {
+                    if (hayIndice) {
+                        stmt.execute("ALTER TABLE medicamentos DROP INDEX ft_nombre");
+                    }
+                    stmt.execute("ALTER TABLE medicamentos ADD FULLTEXT INDEX ft_nombre (nombre) WITH PARSER ngram "
+                            + "COMMENT '" + INDICE_SIN_STOPWORDS + "'");
+                } finally {
+                    // la conexión vuelve al pool: no dejarle la sesión cambiada
+                    stmt.execute("SET SESSION innodb_ft_enable_stopword = DEFAULT");
+                }
+                System.out.println("[MySQL] Índice fulltext 'ft_nombre' " + (hayIndice ? "recreado" : "creado") + " sin stopwords");
             }
+            try (ResultSet rs = stmt.executeQuery("SELECT @@ngram_token_size")) {
+                if (rs.next()) tamanoNgram = rs.getInt(1);
+            }
+            indiceFullText = true;
         } catch (SQLException e) {
-            logError("No se pudo reestablecer la conexión", e);
+            System.err.println("[MySQL] Búsqueda fulltext no disponible, se usará LIKE: " + e.getMessage());
+        }
+    }
+
+    /**
+     * presta una conexión del pool; cerrarla la devuelve
+     * @throws SQLException si el pool no existe (falló la inicialización) o no hay conexión disponible
+     */
+    private Connection obtenerConexion() throws SQLException {
+        if (pool == null) {
+            throw new SQLException("MySQL no inicializado");
         }
+        return pool.obtener();
     }
 
-    public boolean agregarMedicamento(String nombre, String tipo, int cantidad, String distribuidor, List<String> sucursales) {
-        asegurarConexion();
-        String sql = "INSERT INTO medicamentos (nombre, tipo, cantidad, distribuidor, sucursales) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+    /**
+     * @return id generado por el servidor, 0 si no se pudo insertar
+     */
+    public int agregarMedicamento(String nombre, String tipo, int cantidad, String distribuidor, List<String> sucursales) {
+        if (!Sucursales.sonConocidas(sucursales)) {
+            System.err.println("[MySQL] Sucursal desconocida en " + sucursales + ": no se inserta '" + nombre + "'");
+            return 0;
+        }
+        try (Connection conn = obtenerConexion();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setString(1, nombre);
             pstmt.setString(2, tipo);
             pstmt.setInt(3, cantidad);
             pstmt.setString(4, distribuidor);
             pstmt.setString(5, String.join(", ", sucursales));
+            pstmt.setInt(6, Sucursales.mascara(sucursales));
 
+            int idGenerado = 0;
             int rowsAffected = pstmt.executeUpdate();
             if (rowsAffected > 0) {
                 try (ResultSet rs = pstmt.getGeneratedKeys()) {
                     if (rs.next()) {
-                        int idGenerado = rs.getInt(1);
+                        idGenerado = rs.getInt(1);
                         System.out.println("[MySQL] Insertado medicamento id=" + idGenerado);
                     }
                 }
             }
-            return rowsAffected > 0;
+            return idGenerado;
         } catch (SQLException e) {
             logError("Error al agregar medicamento", e);
-            return false;
+            return 0;
+        }
+    }
+
+    /**
+     * alta en lote con addBatch/executeBatch, en transacciones de mysql.batchSize filas
+     * la fecha y el id de cada medicamento se ignoran (los asigna el servidor)
+     * @param medicamentos registros a insertar
+     * @return ids generados, en el mismo orden; si un lote falla se revierte y se
+     *         devuelven solo los ids de los lotes confirmados
+     */
+    public List<Integer> agregarMedicamentos(List<Medicamento> medicamentos) {
+        List<Integer> ids = new ArrayList<>(medicamentos.size());
+        for (Medicamento med : medicamentos) {
+            if (!Sucursales.sonConocidas(med.getSucursales())) {
+                System.err.println("[MySQL] Sucursal desconocida en " + med.getSucursales() + ": no se inserta el lote");
+                return ids;
+            }
         }
+        try (Connection conn = obtenerConexion()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
+                for (int inicio = 0; inicio < medicamentos.size(); inicio += tamanoLote) {
+                    List<Medicamento> lote = medicamentos.subList(inicio, Math.min(inicio + tamanoLote, medicamentos.size()));
+                    for (Medicamento med : lote) {
+                        pstmt.setString(1, med.getNombre());
+                        pstmt.setString(2, med.getTipo());
+                        pstmt.setInt(3, med.getCantidad());
+                        pstmt.setString(4, med.getDistribuidor());
+                        pstmt.setString(5, String.join(", ", med.getSucursales()));
+                        pstmt.setInt(6, med.getMascaraSucursales());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+
+                    List<Integer> idsLote = new ArrayList<>(lote.size());
+                    try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                        while (rs.next()) {
+                            idsLote.add(rs.getInt(1));
+                        }
+                    }
+                    conn.commit();
+                    ids.addAll(idsLote);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            System.out.println("[MySQL] Insertados " + ids.size() + " medicamentos en lote");
+        } catch (SQLException e) {
+            logError("Error al agregar lote de medicamentos", e);
+        }
+        return ids;
     }
 
     public List<Medicamento> obtenerTodosLosMedicamentos() {
-        asegurarConexion();
         List<Medicamento> medicamentos = new ArrayList<>();
         String sql = "SELECT * FROM medicamentos ORDER BY fecha DESC";
 
-        try (Statement stmt = connection.createStatement();
+        try (Connection conn = obtenerConexion();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                Medicamento med = new Medicamento(
-                        rs.getString("nombre"),
-                        rs.getString("tipo"),
-                        rs.getInt("cantidad"),
-                        rs.getString("distribuidor"),
-                        rs.getString("sucursales"),
-                        rs.getTimestamp("fecha")
-                );
-                medicamentos.add(med);
+                medicamentos.add(mapearFila(rs));
             }
         } catch (SQLException e) {
             logError("Error al obtener medicamentos", e);
@@ -237,10 +497,75 @@ public class MySQLDatabase implements AutoCloseable {
     }
 
     public List<Medicamento> obtenerMedicamentosFiltrados(String tipo, String distribuidor) {
-        asegurarConexion();
+        return obtenerMedicamentosFiltrados(tipo, distribuidor, null);
+    }
+
+    /**
+     * filtro por tipo, distribuidor y sucursal; el de sucursal se resuelve sobre idx_sucursales
+     * @param sucursal nombre de la sucursal o "Todas las sucursales"/null
+     */
+    public List<Medicamento> obtenerMedicamentosFiltrados(String tipo, String distribuidor, String sucursal) {
         List<Medicamento> medicamentos = new ArrayList<>();
-        StringBuilder sql = new StringBuilder("SELECT * FROM medicamentos WHERE 1=1");
         List<Object> params = new ArrayList<>();
+        String sql = construirConsultaFiltrada(tipo, distribuidor, sucursal, params);
+
+        try (Connection conn = obtenerConexion();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    medicamentos.add(mapearFila(rs));
+                }
+            }
+        } catch (SQLException e) {
+            logError("Error al obtener medicamentos filtrados", e);
+        }
+
+        return medicamentos;
+    }
+
+    /**
+     * siguiente página en orden (fecha desc, id desc) usando paginación por clave:
+     * la condición sobre (fecha, id) se resuelve con idx_fecha (que en innodb incluye la clave primaria),
+     * así el costo no crece con el número de página como con offset
+     * @param despuesDe cursor de la última fila recibida, o null para la primera página
+     * @param tamano filas por página
+     */
+    public List<Medicamento> obtenerPagina(CursorPagina despuesDe, int tamano) {
+        List<Medicamento> medicamentos = new ArrayList<>(tamano);
+        String sql = despuesDe == null
+                ? "SELECT * FROM medicamentos ORDER BY fecha DESC, id DESC LIMIT ?"
+                : "SELECT * FROM medicamentos WHERE fecha < ? OR (fecha = ? AND id < ?) ORDER BY fecha DESC, id DESC LIMIT ?";
+
+        try (Connection conn = obtenerConexion();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int i = 1;
+            if (despuesDe != null) {
+                Timestamp fecha = FechaRegistro.aTimestamp(despuesDe.getFechaMillis());
+                pstmt.setTimestamp(i++, fecha);
+                pstmt.setTimestamp(i++, fecha);
+                pstmt.setInt(i++, despuesDe.getId());
+            }
+            pstmt.setInt(i, tamano);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    medicamentos.add(mapearFila(rs));
+                }
+            }
+        } catch (SQLException e) {
+            logError("Error al obtener página de medicamentos", e);
+        }
+
+        return medicamentos;
+    }
+
+    // arma el select filtrado; "Todos los tipos" / "Todos los distribuidores" / "Todas las sucursales" (o null) no filtran
+    private String construirConsultaFiltrada(String tipo, String distribuidor, String sucursal, List<Object> params) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM medicamentos WHERE 1=1");
 
         if (tipo != null && !tipo.equals("Todos los tipos")) {
             sql.append(" AND tipo = ?");
@@ -252,64 +577,159 @@ public class MySQLDatabase implements AutoCloseable {
             params.add(distribuidor);
         }
 
+        if (sucursal != null && !sucursal.equals(Sucursales.TODAS)) {
+            // "tiene el bit" se expresa como la lista de máscaras que lo contienen para que use el índice
+            List<Integer> mascaras = Sucursales.mascarasQueIncluyen(Sucursales.bit(sucursal));
+            if (mascaras.isEmpty()) {
+                sql.append(" AND 1=0");
+            } else {
+                sql.append(" AND sucursales_mask IN (").append(String.join(", ", Collections.nCopies(mascaras.size(), "?"))).append(")");
+                params.addAll(mascaras);
+            }
+        }
+
         sql.append(" ORDER BY fecha DESC");
+        return sql.toString();
+    }
+
+    /**
+     * recorre todos los medicamentos en streaming, sin armar la lista en memoria
+     * @param consumidor receptor de cada fila
+     * @return filas entregadas
+     */
+    public int recorrerMedicamentos(Consumer<Medicamento> consumidor) {
+        return recorrerMedicamentosFiltrados(null, null, consumidor);
+    }
+
+    /**
+     * variante en streaming de obtenerMedicamentosFiltrados para reportes y exportaciones:
+     * usa un cursor del servidor de solo avance y solo lectura (fetchSize = Integer.MIN_VALUE),
+     * así el driver entrega las filas de a una y la memoria no depende del tamaño de la tabla.
+     * la conexión queda ocupada mientras dure el recorrido
+     * si el consumidor lanza una excepción se cancela la consulta en el servidor y la excepción se propaga
+     * @param tipo tipo a filtrar o "Todos los tipos"/null
+     * @param distribuidor distribuidor a filtrar o "Todos los distribuidores"/null
+     * @param consumidor receptor de cada fila
+     * @return filas entregadas
+     */
+    public int recorrerMedicamentosFiltrados(String tipo, String distribuidor, Consumer<Medicamento> consumidor) {
+        return recorrerMedicamentosFiltrados(tipo, distribuidor, null, consumidor);
+    }
+
+    /**
+     * igual que el anterior, además filtrando por sucursal ("Todas las sucursales"/null no filtra)
+     */
+    public int recorrerMedicamentosFiltrados(String tipo, String distribuidor, String sucursal, Consumer<Medicamento> consumidor) {
+        List<Object> params = new ArrayList<>();
+        String sql = construirConsultaFiltrada(tipo, distribuidor, sucursal, params);
+        int entregadas = 0;
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql.toString())) {
+        try (Connection conn = obtenerConexion();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(Integer.MIN_VALUE);
             for (int i = 0; i < params.size(); i++) {
                 pstmt.setObject(i + 1, params.get(i));
             }
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    Medicamento med = new Medicamento(
-                            rs.getString("nombre"),
-                            rs.getString("tipo"),
-                            rs.getInt("cantidad"),
-                            rs.getString("distribuidor"),
-                            rs.getString("sucursales"),
-                            rs.getTimestamp("fecha")
-                    );
-                    medicamentos.add(med);
+                    try {
+                        consumidor.accept(mapearFila(rs));
+                    } catch (RuntimeException e) {
+                        // sin cancelar, cerrar un resultset en streaming obliga a leer el resto de filas
+                        pstmt.cancel();
+                        throw e;
+                    }
+                    entregadas++;
                 }
             }
         } catch (SQLException e) {
-            logError("Error al obtener medicamentos filtrados", e);
+            logError("Error al recorrer medicamentos", e);
         }
 
-        return medicamentos;
+        return entregadas;
     }
 
+    /**
+     * elimina el primer registro (menor id) con ese nombre y fecha exacta, igual que el xml
+     * antes se borraban todas las filas del nombre en ese día
+     * @param fecha "yyyy-MM-dd HH:mm:ss" ("yyyy-MM-dd" cuenta como las 00:00:00)
+     * @deprecated dos pedidos iguales en el mismo segundo no se distinguen; usar eliminarMedicamentoPorId
+     */
+    @Deprecated
     public boolean eliminarMedicamento(String nombre, String fecha) {
-        asegurarConexion();
-        String sql = "DELETE FROM medicamentos WHERE nombre = ? AND DATE(fecha) = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        int id = 0;
+        try (Connection conn = obtenerConexion();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT id FROM medicamentos WHERE nombre = ? AND fecha = ? ORDER BY id LIMIT 1")) {
             pstmt.setString(1, nombre);
-            pstmt.setString(2, fecha);
-
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            logError("Error al eliminar medicamento", e);
+            pstmt.setTimestamp(2, FechaRegistro.aTimestamp(FechaRegistro.aMillis(fecha)));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    id = rs.getInt(1);
+                }
+            }
+        } catch (SQLException | DateTimeParseException e) {
+            logError("Error al buscar medicamento a eliminar", e);
             return false;
         }
+        return id > 0 && eliminarMedicamentoPorId(id);
     }
 
     public boolean eliminarMedicamentoPorId(int id) {
-        asegurarConexion();
-        String sql = "DELETE FROM medicamentos WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+        try {
+            return eliminarRegistrando("id = ?", id) > 0;
         } catch (SQLException e) {
             logError("Error al eliminar medicamento por id", e);
             return false;
         }
     }
 
+    // anota los ids en medicamentos_eliminados y los borra en la misma transacción
+    // las filas se leen con FOR UPDATE: así el número de alta que se anota es el último confirmado
+    // (un sellado en curso sobre la fila termina antes, o la salta y ya no la ve)
+    private int eliminarRegistrando(String condicion, Object... params) throws SQLException {
+        try (Connection conn = obtenerConexion()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement leer = conn.prepareStatement(
+                         "SELECT id, alta FROM medicamentos WHERE " + condicion + " FOR UPDATE");
+                 PreparedStatement registrar = conn.prepareStatement(
+                         "INSERT INTO medicamentos_eliminados (id_medicamento, alta, cambio) VALUES (?, ?, 0)");
+                 PreparedStatement borrar = conn.prepareStatement("DELETE FROM medicamentos WHERE id = ?")) {
+                for (int i = 0; i < params.length; i++) {
+                    leer.setObject(i + 1, params[i]);
+                }
+                try (ResultSet rs = leer.executeQuery()) {
+                    while (rs.next()) {
+                        registrar.setInt(1, rs.getInt(1));
+                        registrar.setLong(2, rs.getLong(2));
+                        registrar.addBatch();
+                        borrar.setInt(1, rs.getInt(1));
+                        borrar.addBatch();
+                    }
+                }
+                registrar.executeBatch();
+                int eliminadas = 0;
+                for (int afectadas : borrar.executeBatch()) {
+                    // las filas están bloqueadas por esta transacción: sin conteo, cada una se borró
+                    eliminadas += afectadas == Statement.SUCCESS_NO_INFO ? 1 : afectadas;
+                }
+                conn.commit();
+                return eliminadas;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
     public boolean actualizarCantidad(int id, int nuevaCantidad) {
-        asegurarConexion();
-        String sql = "UPDATE medicamentos SET cantidad = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        // cambio = 0 deja la fila pendiente de sellar: los lectores la reciben como modificación
+        String sql = "UPDATE medicamentos SET cantidad = ?, cambio = 0 WHERE id = ?";
+        try (Connection conn = obtenerConexion();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, nuevaCantidad);
             pstmt.setInt(2, id);
             return pstmt.executeUpdate() > 0;
@@ -319,22 +739,28 @@ public class MySQLDatabase implements AutoCloseable {
         }
     }
 
+    /**
+     * medicamentos cuyo nombre contiene el patrón, más recientes primero
+     * con ft_nombre la búsqueda de frase ngram elige los candidatos por índice y el like solo
+     * confirma la subcadena exacta sobre ellos; los patrones con alguna palabra más corta que
+     * un ngram (o con comillas, que cortarían la frase) se resuelven solo con like
+     */
     public List<Medicamento> buscarPorNombre(String patron) {
-        asegurarConexion();
         List<Medicamento> lista = new ArrayList<>();
-        String sql = "SELECT * FROM medicamentos WHERE nombre LIKE ? ORDER BY fecha DESC";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, "%" + patron + "%");
+        boolean usarFullText = indiceFullText && admiteFullText(patron, tamanoNgram);
+        String sql = usarFullText
+                ? "SELECT * FROM medicamentos WHERE MATCH(nombre) AGAINST (? IN BOOLEAN MODE) AND nombre LIKE ? ORDER BY fecha DESC"
+                : "SELECT * FROM medicamentos WHERE nombre LIKE ? ORDER BY fecha DESC";
+        try (Connection conn = obtenerConexion();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int i = 1;
+            if (usarFullText) {
+                pstmt.setString(i++, "\"" + patron + "\"");
+            }
+            pstmt.setString(i, "%" + patron + "%");
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    lista.add(new Medicamento(
-                            rs.getString("nombre"),
-                            rs.getString("tipo"),
-                            rs.getInt("cantidad"),
-                            rs.getString("distribuidor"),
-                            rs.getString("sucursales"),
-                            rs.getTimestamp("fecha")
-                    ));
+                    lista.add(mapearFila(rs));
                 }
             }
         } catch (SQLException e) {
@@ -343,11 +769,51 @@ public class MySQLDatabase implements AutoCloseable {
         return lista;
     }
 
+    /**
+     * true si la búsqueda de frase ngram encuentra todo lo que encontraría el like
+     * el parser corta el texto en los espacios y signos: una palabra más corta que ngram_token_size
+     * ("b" en "vitamina b") no genera ningún token y la frase no coincide con nada, así que cada
+     * palabra del patrón tiene que alcanzar el tamaño del ngram
+     */
+    static boolean admiteFullText(String patron, int tamanoNgram) {
+        if (patron.contains("\"")) {
+            return false;
+        }
+        boolean hayPalabras = false;
+        for (String palabra : patron.split("[^\\p{L}\\p{N}]+")) {
+            if (palabra.isEmpty()) continue;
+            if (palabra.length() < tamanoNgram) {
+                return false;
+            }
+            hayPalabras = true;
+        }
+        return hayPalabras;
+    }
+
+    /**
+     * nombres distintos ya registrados con el tipo de su alta más reciente (catálogo del autocompletado)
+     */
+    public Map<String, String> obtenerNombresRegistrados() {
+        Map<String, String> nombres = new LinkedHashMap<>();
+        String sql = "SELECT m.nombre, m.tipo FROM medicamentos m "
+                + "JOIN (SELECT MAX(id) AS id FROM medicamentos GROUP BY nombre) u ON m.id = u.id";
+        try (Connection conn = obtenerConexion();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                nombres.put(rs.getString(1), rs.getString(2));
+            }
+        } catch (SQLException e) {
+            logError("Error al obtener nombres registrados", e);
+        }
+        return nombres;
+    }
+
     public int obtenerTotalMedicamentos() {
-        asegurarConexion();
         String sql = "SELECT COUNT(*) FROM medicamentos";
 
-        try (Statement stmt = connection.createStatement();
+        try (Connection conn = obtenerConexion();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             if (rs.next()) {
@@ -360,31 +826,303 @@ public class MySQLDatabase implements AutoCloseable {
         return 0;
     }
 
-    public void cerrarConexion() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("[MySQL] Conexión cerrada");
+    // ===================== cambios desde un cursor =====================
+
+    /**
+     * cursor que marca el estado actual (último número de cambio sellado), con el total de
+     * registros leído en la misma consulta
+     * @return null si no hay conexión
+     */
+    public CursorCambios obtenerCursorCambios() {
+        try (Connection conn = obtenerConexion()) {
+            sellarCambios(conn);
+            return cursorActual(conn, true);
+        } catch (SQLException e) {
+            logError("Error al obtener cursor de cambios", e);
+            return null;
+        }
+    }
+
+    /**
+     * altas (filas selladas por primera vez después del cursor), y bajas y modificaciones de filas que
+     * el cursor ya había visto; todas se buscan por idx_cambio y el costo depende de la cantidad de cambios
+     * las bajas más viejas que mysql.bajas.retencionDias ya no están: esos cursores reciben recarga completa
+     * @return null si no hay conexión
+     */
+    public CambiosRegistro obtenerCambiosDesde(CursorCambios desde) {
+        try (Connection conn = obtenerConexion()) {
+            sellarCambios(conn);
+            // cursor, altas y bajas se leen en una misma transacción de solo lectura: todas las
+            // consultas ven la misma foto y un cambio confirmado a mitad aparece en la próxima llamada
+            int aislamiento = conn.getTransactionIsolation();
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            try {
+                CambiosRegistro cambios = leerCambiosDesde(conn, desde);
+                conn.commit();
+                return cambios;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                conn.setTransactionIsolation(aislamiento);
             }
         } catch (SQLException e) {
-            logError("Error al cerrar conexión", e);
+            logError("Error al obtener cambios", e);
+            return null;
         }
     }
 
-    public boolean isConectado() {
+    private CambiosRegistro leerCambiosDesde(Connection conn, CursorCambios desde) throws SQLException {
+        CursorCambios actual = cursorActual(conn, true);
+        if (desde == null || desde.getUltimaAlta() > actual.getUltimaAlta() || desde.getUltimoCambio() > actual.getUltimoCambio()) {
+            return CambiosRegistro.recargaCompleta(actual);
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT valor FROM secuencia_cambios WHERE nombre = 'purgado'")) {
+            if (rs.next() && desde.getUltimoCambio() < rs.getLong(1)) {
+                return CambiosRegistro.recargaCompleta(actual);
+            }
+        }
+
+        // cambio >= alta salvo en una fila modificada que aún no se selló (cambio = 0): el rango sobre
+        // cambio deja usar idx_cambio y alta decide si es un alta
+        List<Medicamento> altas = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT * FROM medicamentos WHERE (cambio = 0 OR cambio > ?) AND alta > ? AND alta <= ? ORDER BY id")) {
+            pstmt.setLong(1, desde.getUltimaAlta());
+            pstmt.setLong(2, desde.getUltimaAlta());
+            pstmt.setLong(3, actual.getUltimaAlta());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    altas.add(mapearFila(rs));
+                }
+            }
+        }
+
+        List<Medicamento> modificaciones = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT * FROM medicamentos WHERE cambio > ? AND cambio <= ? AND alta > 0 AND alta <= ? ORDER BY id")) {
+            pstmt.setLong(1, desde.getUltimoCambio());
+            pstmt.setLong(2, actual.getUltimoCambio());
+            pstmt.setLong(3, desde.getUltimaAlta());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    modificaciones.add(mapearFila(rs));
+                }
+            }
+        }
+
+        // un registro creado y eliminado después del cursor no se informa: el lector nunca lo vio
+        List<Integer> bajas = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT id_medicamento FROM medicamentos_eliminados " +
+                "WHERE cambio > ? AND cambio <= ? AND alta > 0 AND alta <= ? ORDER BY cambio, secuencia")) {
+            pstmt.setLong(1, desde.getUltimoCambio());
+            pstmt.setLong(2, actual.getUltimoCambio());
+            pstmt.setLong(3, desde.getUltimaAlta());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    bajas.add(rs.getInt(1));
+                }
+            }
+        }
+        return new CambiosRegistro(altas, bajas, modificaciones, actual);
+    }
+
+    // una sola consulta: la marca (último número sellado) y, si se pide, el total salen de la misma lectura
+    // el total cuenta las filas ya selladas; las que aún tienen alta = 0 se sumarán con la consulta que las informe
+    private CursorCambios cursorActual(Connection conn, boolean conTotal) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT (SELECT valor FROM secuencia_cambios WHERE nombre = 'cambio')" +
+                     (conTotal ? ", (SELECT COUNT(*) FROM medicamentos) - " +
+                             "(SELECT COUNT(*) FROM medicamentos WHERE cambio = 0 AND alta = 0)" : ""))) {
+            rs.next();
+            long marca = rs.getLong(1);
+            return new CursorCambios(marca, marca, conTotal ? rs.getInt(2) : CursorCambios.SIN_TOTAL);
+        }
+    }
+
+    // numera las filas y bajas ya confirmadas que aún tienen cambio = 0, en una transacción propia:
+    // todas las de una pasada reciben el mismo número, uno más que el último repartido
+    // los lectores se ordenan entre sí con el candado de la fila 'cambio' de secuencia_cambios y solo
+    // numeran cambios confirmados, así ningún cambio puede aparecer después con un número que un lector
+    // ya dio por visto (max(id) no servía de marca: el id se reparte al insertar y no al confirmar)
+    // las filas de transacciones abiertas están bloqueadas y SKIP LOCKED las deja para una pasada
+    // posterior, de modo que un escritor lento no frena a los lectores ni a los demás escritores; un
+    // servidor sin SKIP LOCKED (anterior a mysql 8) espera a que esas transacciones confirmen
+    // read committed evita los candados de hueco sobre idx_cambio, que frenarían las altas
+    private void sellarCambios(Connection conn) throws SQLException {
+        int aislamiento = conn.getTransactionIsolation();
+        conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        conn.setAutoCommit(false);
         try {
-            if (connection == null) {
-                System.out.println("[MySQL] connection es null");
-                return false;
+            long numero;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT valor FROM secuencia_cambios WHERE nombre = 'cambio' FOR UPDATE")) {
+                rs.next();
+                numero = rs.getLong(1) + 1;
             }
-            if (connection.isClosed()) {
-                System.out.println("[MySQL] connection está cerrada");
-                return false;
+            int selladas = sellar(conn, "SELECT id FROM medicamentos WHERE cambio = 0",
+                    "UPDATE medicamentos SET cambio = ?, alta = IF(alta = 0, cambio, alta) WHERE id = ?", numero);
+            selladas += sellar(conn, "SELECT secuencia FROM medicamentos_eliminados WHERE cambio = 0",
+                    "UPDATE medicamentos_eliminados SET cambio = ? WHERE secuencia = ?", numero);
+            if (selladas > 0) {
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "UPDATE secuencia_cambios SET valor = ? WHERE nombre = 'cambio'")) {
+                    pstmt.setLong(1, numero);
+                    pstmt.executeUpdate();
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+            conn.setTransactionIsolation(aislamiento);
+        }
+    }
+
+    // bloquea las filas pendientes que no estén en una transacción abierta y les pone el número
+    // (mysql asigna de izquierda a derecha: el alta toma el cambio recién asignado)
+    private int sellar(Connection conn, String pendientes, String marcar, long numero) throws SQLException {
+        List<Long> claves = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = leerPendientes(stmt, pendientes)) {
+            while (rs.next()) {
+                claves.add(rs.getLong(1));
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(marcar)) {
+            for (int i = 0; i < claves.size(); i++) {
+                pstmt.setLong(1, numero);
+                pstmt.setLong(2, claves.get(i));
+                pstmt.addBatch();
+                if ((i + 1) % tamanoLote == 0 || i == claves.size() - 1) {
+                    pstmt.executeBatch();
+                }
+            }
+        }
+        return claves.size();
+    }
+
+    private ResultSet leerPendientes(Statement stmt, String pendientes) throws SQLException {
+        if (saltarBloqueadas) {
+            try {
+                return stmt.executeQuery(pendientes + " FOR UPDATE SKIP LOCKED");
+            } catch (SQLSyntaxErrorException e) {
+                saltarBloqueadas = false;
+                System.err.println("[MySQL] El servidor no admite SKIP LOCKED: el sellado de cambios esperará a los escritores");
+            }
+        }
+        return stmt.executeQuery(pendientes + " FOR UPDATE");
+    }
+
+    // ===================== agregados para tableros =====================
+
+    // lector de una fila de un group by
+    private interface FilaAgregada {
+        void leer(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * unidades por tipo, distribuidor, sucursal, día y semana calculadas con group by en el servidor
+     * la cache recuerda hasta qué número de cambio llega: cada consulta solo agrega las filas selladas
+     * después como altas (de esta u otra instancia, ver sellarCambios); si desde entonces se selló una
+     * baja o un cambio de cantidad de una fila ya contada, venga de la instancia que venga, la consulta
+     * recalcula todo
+     * @return copia de los agregados (vacía si no hay conexión)
+     */
+    public synchronized EstadisticasInventario obtenerEstadisticas() {
+        try (Connection conn = obtenerConexion()) {
+            sellarCambios(conn);
+            long hasta = cursorActual(conn, false).getUltimaAlta();
+
+            if (estadisticas == null || hasta < marcaEstadisticas
+                    || (hasta > marcaEstadisticas && cambiaronContadas(conn, marcaEstadisticas))) {
+                estadisticas = new EstadisticasInventario();
+                marcaEstadisticas = 0;
+            }
+            if (hasta > marcaEstadisticas) {
+                // se arman aparte y se combinan al final: un fallo a mitad no deja la cache a medias
+                estadisticas.combinar(agregarEnServidor(conn, marcaEstadisticas, hasta));
+                marcaEstadisticas = hasta;
             }
-            try (Statement stmt = connection.createStatement()) {
-                stmt.executeQuery("SELECT 1");
+            return estadisticas.copia();
+        } catch (SQLException e) {
+            logError("Error al obtener estadísticas", e);
+            return new EstadisticasInventario();
+        }
+    }
+
+    // true si alguna fila con alta hasta la marca se eliminó o modificó después de ella (mismas
+    // condiciones que las bajas y modificaciones de leerCambiosDesde), o si las bajas de ese tramo
+    // ya se purgaron y no se puede saber
+    private boolean cambiaronContadas(Connection conn, long marca) throws SQLException {
+        String sql = "SELECT (SELECT valor FROM secuencia_cambios WHERE nombre = 'purgado') > ?"
+                + " OR EXISTS (SELECT 1 FROM medicamentos_eliminados WHERE cambio > ? AND alta > 0 AND alta <= ?)"
+                + " OR EXISTS (SELECT 1 FROM medicamentos WHERE cambio > ? AND alta > 0 AND alta <= ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 1; i <= 5; i++) {
+                pstmt.setLong(i, marca);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    // agregados de las filas con alta en (desde, hasta]; cambio >= alta (o 0 si la fila se modificó y
+    // aún no se selló), así el rango va por idx_cambio; sin tope sobre cambio: una fila modificada
+    // después de hasta también cuenta como alta de este tramo
+    private EstadisticasInventario agregarEnServidor(Connection conn, long desde, long hasta) throws SQLException {
+        EstadisticasInventario parcial = new EstadisticasInventario();
+        String rango = " FROM medicamentos WHERE (cambio = 0 OR cambio > ?) AND alta > ? AND alta <= ? GROUP BY ";
+        consultarAgregado(conn, "SELECT tipo, COUNT(*), SUM(cantidad)" + rango + "tipo", desde, hasta,
+                rs -> parcial.acumularTipo(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+        consultarAgregado(conn, "SELECT distribuidor, COUNT(*), SUM(cantidad)" + rango + "distribuidor", desde, hasta,
+                rs -> parcial.acumularDistribuidor(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+        consultarAgregado(conn, "SELECT sucursales_mask, COUNT(*), SUM(cantidad)" + rango + "sucursales_mask", desde, hasta,
+                rs -> parcial.acumularSucursales(rs.getInt(1), rs.getLong(2), rs.getLong(3)));
+        consultarAgregado(conn, "SELECT DATE(fecha), COUNT(*), SUM(cantidad)" + rango + "DATE(fecha)", desde, hasta,
+                rs -> parcial.acumularDia(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+        return parcial;
+    }
+
+    private void consultarAgregado(Connection conn, String sql, long desde, long hasta, FilaAgregada lector) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, desde);
+            pstmt.setLong(2, desde);
+            pstmt.setLong(3, hasta);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    lector.leer(rs);
+                }
             }
-            System.out.println("[MySQL] conexión verificada");
+        }
+    }
+
+    public void cerrarConexion() {
+        if (pool != null && !pool.isCerrado()) {
+            pool.close();
+            System.out.println("[MySQL] Pool de conexiones cerrado");
+        }
+    }
+
+    public boolean isConectado() {
+        if (pool == null) {
+            System.out.println("[MySQL] pool es null");
+            return false;
+        }
+        if (pool.isCerrado()) {
+            System.out.println("[MySQL] pool está cerrado");
+            return false;
+        }
+        try (Connection conn = pool.obtener(); Statement stmt = conn.createStatement()) {
+            stmt.executeQuery("SELECT 1");
+            System.out.println("[MySQL] conexión verificada (" + pool.obtenerEstado() + ")");
             return true;
         } catch (SQLException e) {
             logError("Error al verificar conexión", e);
@@ -393,13 +1131,22 @@ public class MySQLDatabase implements AutoCloseable {
     }
 
     public String obtenerEstadoConexion() {
-        try {
-            if (connection == null) return "NULL";
-            if (connection.isClosed()) return "CERRADA";
-            return "ABIERTA";
-        } catch (SQLException e) {
-            return "ERROR: " + e.getMessage();
-        }
+        if (pool == null) return "NULL";
+        if (pool.isCerrado()) return "CERRADA";
+        return "ABIERTA (" + pool.obtenerEstado() + ")";
+    }
+
+    // convierte la fila actual del resultset en un medicamento, incluyendo su id
+    private Medicamento mapearFila(ResultSet rs) throws SQLException {
+        return new Medicamento(
+                rs.getInt("id"),
+                rs.getString("nombre"),
+                rs.getString("tipo"),
+                rs.getInt("cantidad"),
+                rs.getString("distribuidor"),
+                rs.getString("sucursales"),
+                rs.getTimestamp("fecha")
+        );
     }
 
     private void logError(String msg, Exception e) {
@@ -1,23 +1,73 @@
 // (package eliminado para unificar en default package)
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class PanelRegistros extends JPanel {
-    private BaseDatosXML baseDatosXML;
-    private MySQLDatabase baseDatosMySQL;
-    private boolean usarMySQL;
+    private RepositorioMedicamentos repositorio;   // almacenamiento activo; lo reemplaza el cambio de modo
     private JTable tablaMedicamentos;
-    private DefaultTableModel modelo;
+    private ModeloTablaMedicamentos modelo;     // las filas son los medicamentos mostrados
     private JComboBox<String> cmbFiltroTipo;
     private JComboBox<String> cmbFiltroDistribuidor;
+    private JComboBox<String> cmbFiltroSucursal;
+    private JTextField txtFechaDesde;
+    private JTextField txtFechaHasta;
+    private JTextField txtCantidadMin;
+    private JTextField txtCantidadMax;
+    private JTextField txtBuscar;
+    private JScrollBar barraScroll;
     
-    public PanelRegistros(BaseDatosXML baseDatosXML, MySQLDatabase baseDatosMySQL, boolean usarMySQL) {
-        this.baseDatosXML = baseDatosXML;
-        this.baseDatosMySQL = baseDatosMySQL;
-        this.usarMySQL = usarMySQL;
+    // filtrado y orden en memoria sobre las filas cargadas; si caben todos los registros
+    // (hasta registros.limiteResidente) se leen de una vez y los filtros ya no consultan el almacenamiento
+    // el ordenador solo trabaja mientras la tabla tenga hasta ese límite de filas (crea un objeto por fila
+    // y ordena en el hilo de eventos); por encima se quita, las filas quedan en el orden del almacenamiento
+    // (fecha desc) y los filtros locales se aplican al cargar, recargando cuando cambian
+    private static final int LIMITE_RESIDENTE = Configuracion.entero("registros.limiteResidente", 20000);
+    // el ordenador nunca recorre filas fuera del heap (ver ModeloTablaMedicamentos)
+    private static final int LIMITE_ORDEN = Math.min(LIMITE_RESIDENTE, ModeloTablaMedicamentos.maxFilasEnHeap());
+    private TableRowSorter<ModeloTablaMedicamentos> ordenador;
+    private boolean residente = false;         // la tabla tiene todos los registros sin filtrar
+    private Predicate<Medicamento> filtroLocal; // búsqueda, combos y rangos combinados; null = sin filtro
+    private Timer temporizadorRangos;          // sin ordenador, un cambio de rango recarga tras la espera
+    
+    // búsqueda por nombre: se espera a que se deje de escribir y se resuelve con el índice de prefijos del modelo
+    private static final int ESPERA_BUSQUEDA_MS = 150;
+    private Timer temporizadorBusqueda;
+    private String prefijoBusqueda;            // texto normalizado de la búsqueda aplicada, null = sin búsqueda
+    private Set<String> coincidencias;         // nombres cargados que cumplen la búsqueda aplicada
+    private String busquedaCargada;            // búsqueda con la que se leyó la tabla desde el almacenamiento
+    
+    // refresco incremental: tras una lectura completa solo se piden las altas, bajas y modificaciones posteriores
+    private CursorCambios cursorCambios;       // null = la próxima actualización lee todo
+    private int totalRegistros;                // total mostrado en la pestaña, el del último cursor
+    
+    // las lecturas corren en TareasSegundoPlano; solo una carga de tabla está activa a la vez
+    private static final int TAMANO_TANDA = 500;   // filas por entrega a la tabla en las cargas filtradas
+    private CargaTabla<?> cargaEnCurso;
+    private boolean actualizacionPendiente = false; // se pidió un refresco mientras había una carga activa
+    private JProgressBar barraProgreso;
+    
+    // paginación por clave de la vista sin filtros: se piden páginas a medida que se hace scroll
+    private static final int TAMANO_PAGINA = 200;
+    private CursorPagina cursorSiguiente;      // clave de la última fila cargada
+    private boolean hayMasPaginas = false;     // la última página vino completa
+    
+    public PanelRegistros(RepositorioMedicamentos repositorio) {
+        this.repositorio = repositorio;
         
         // Aplicar estilo moderno al panel
         EstiloModerno.aplicarEstiloPanel(this);
@@ -30,15 +80,19 @@ public class PanelRegistros extends JPanel {
     
     private void configurarComponentes() {
         // tabla de medicamentos
-        String[] columnas = {"Nombre", "Tipo", "Cantidad", "Distribuidor", "Sucursales", "Fecha"};
-        modelo = new DefaultTableModel(columnas, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // hacer la tabla no editable
-            }
-        };
+        modelo = new ModeloTablaMedicamentos();
         tablaMedicamentos = new JTable(modelo);
         tablaMedicamentos.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        ordenador = new TableRowSorter<>(modelo);
+        tablaMedicamentos.setRowSorter(ordenador);
+        // la celda de fecha llega como milisegundos y se formatea solo al pintarse
+        tablaMedicamentos.getColumnModel().getColumn(ModeloTablaMedicamentos.COLUMNA_FECHA)
+                .setCellRenderer(new DefaultTableCellRenderer() {
+                    @Override
+                    protected void setValue(Object valor) {
+                        super.setValue(valor instanceof Long ? FechaRegistro.texto((Long) valor) : valor);
+                    }
+                });
         
         // Aplicar estilo moderno a la tabla
         EstiloModerno.aplicarEstiloTabla(tablaMedicamentos);
@@ -51,6 +105,30 @@ public class PanelRegistros extends JPanel {
         String[] distribuidores = {"Todos los distribuidores", "Cofarma", "Empsephar", "Cemefar"};
         cmbFiltroDistribuidor = new JComboBox<>(distribuidores);
         EstiloModerno.aplicarEstiloComboBox(cmbFiltroDistribuidor);
+        
+        cmbFiltroSucursal = new JComboBox<>();
+        cmbFiltroSucursal.addItem(Sucursales.TODAS);
+        for (String sucursal : Sucursales.todas()) {
+            cmbFiltroSucursal.addItem(sucursal);
+        }
+        EstiloModerno.aplicarEstiloComboBox(cmbFiltroSucursal);
+        
+        // rangos (vacío = sin límite); fechas en formato yyyy-MM-dd
+        txtFechaDesde = crearCampoTexto(10);
+        txtFechaHasta = crearCampoTexto(10);
+        txtCantidadMin = crearCampoTexto(6);
+        txtCantidadMax = crearCampoTexto(6);
+        txtBuscar = crearCampoTexto(14);
+        
+        temporizadorBusqueda = new Timer(ESPERA_BUSQUEDA_MS, e -> aplicarBusqueda());
+        temporizadorBusqueda.setRepeats(false);
+        temporizadorRangos = new Timer(ESPERA_BUSQUEDA_MS, e -> aplicarFiltros());
+        temporizadorRangos.setRepeats(false);
+        
+        barraProgreso = new JProgressBar();
+        barraProgreso.setIndeterminate(true);
+        barraProgreso.setStringPainted(true);
+        barraProgreso.setVisible(false);
     }
     
     private void configurarLayout() {
@@ -86,6 +164,28 @@ public class PanelRegistros extends JPanel {
         cmbFiltroDistribuidor.setPreferredSize(comboSize);
         panelFiltros.add(cmbFiltroDistribuidor);
         
+        JLabel lblFiltroSucursal = new JLabel("Filtrar por sucursal:");
+        lblFiltroSucursal.setFont(ResponsiveManager.getResponsiveFont(screenSize, ResponsiveManager.FontType.NORMAL));
+        lblFiltroSucursal.setForeground(EstiloModerno.TEXTO_PRINCIPAL);
+        panelFiltros.add(lblFiltroSucursal);
+        
+        cmbFiltroSucursal.setPreferredSize(comboSize);
+        panelFiltros.add(cmbFiltroSucursal);
+        
+        // segunda fila: búsqueda por nombre y rangos de fecha y cantidad
+        JPanel panelRangos = ResponsiveManager.createResponsivePanel(new FlowLayout());
+        EstiloModerno.aplicarEstiloPanelSecundario(panelRangos);
+        Font fuenteLabel = ResponsiveManager.getResponsiveFont(screenSize, ResponsiveManager.FontType.NORMAL);
+        agregarCampo(panelRangos, "Buscar nombre:", txtBuscar, fuenteLabel);
+        agregarCampo(panelRangos, "Fecha desde:", txtFechaDesde, fuenteLabel);
+        agregarCampo(panelRangos, "hasta:", txtFechaHasta, fuenteLabel);
+        agregarCampo(panelRangos, "Cantidad mín.:", txtCantidadMin, fuenteLabel);
+        agregarCampo(panelRangos, "máx.:", txtCantidadMax, fuenteLabel);
+        
+        JPanel panelSuperior = new JPanel(new BorderLayout());
+        panelSuperior.add(panelFiltros, BorderLayout.NORTH);
+        panelSuperior.add(panelRangos, BorderLayout.SOUTH);
+        
         // panel de botones responsive
         JPanel panelBotones = ResponsiveManager.createResponsivePanel(new FlowLayout());
         EstiloModerno.aplicarEstiloPanel(panelBotones);
@@ -113,17 +213,22 @@ public class PanelRegistros extends JPanel {
         panelBotones.add(btnActualizar);
         panelBotones.add(btnEliminar);
         panelBotones.add(btnExportar);
+        panelBotones.add(barraProgreso);
         
         // panel principal responsive
         JPanel panelPrincipal = ResponsiveManager.createResponsivePanel(new BorderLayout());
         EstiloModerno.aplicarEstiloPanel(panelPrincipal);
-        panelPrincipal.add(panelFiltros, BorderLayout.NORTH);
+        panelPrincipal.add(panelSuperior, BorderLayout.NORTH);
         
         // ScrollPane con tabla responsive
         JScrollPane scrollPane = new JScrollPane(tablaMedicamentos);
         scrollPane.getViewport().setBackground(EstiloModerno.FONDO_PANEL);
         scrollPane.setBackground(EstiloModerno.FONDO_PANEL);
         
+        // al acercarse al final de lo cargado se pide la siguiente página
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> verificarFinDeScroll());
+        barraScroll = scrollPane.getVerticalScrollBar();
+        
         // Ajustar altura de filas de la tabla según tamaño de pantalla
         switch (screenSize) {
             case SMALL:
@@ -150,67 +255,401 @@ public class PanelRegistros extends JPanel {
         // configurar eventos de los filtros
         cmbFiltroTipo.addActionListener(e -> aplicarFiltros());
         cmbFiltroDistribuidor.addActionListener(e -> aplicarFiltros());
+        cmbFiltroSucursal.addActionListener(e -> aplicarFiltros());
+        
+        // los rangos solo filtran lo cargado: en la vista paginada el scroll trae más páginas
+        // mientras las filas visibles no llenen la tabla
+        DocumentListener alEscribir = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { cambiarRango(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { cambiarRango(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { cambiarRango(); }
+        };
+        for (JTextField campo : new JTextField[]{txtFechaDesde, txtFechaHasta, txtCantidadMin, txtCantidadMax}) {
+            campo.getDocument().addDocumentListener(alEscribir);
+        }
+        
+        // cada tecla reinicia la espera: solo se busca una vez por ráfaga de escritura
+        txtBuscar.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { temporizadorBusqueda.restart(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { temporizadorBusqueda.restart(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { temporizadorBusqueda.restart(); }
+        });
+    }
+    
+    private static JTextField crearCampoTexto(int columnas) {
+        JTextField campo = new JTextField(columnas);
+        EstiloModerno.aplicarEstiloTextField(campo);
+        return campo;
+    }
+    
+    private static void agregarCampo(JPanel panel, String texto, JTextField campo, Font fuente) {
+        JLabel etiqueta = new JLabel(texto);
+        etiqueta.setFont(fuente);
+        etiqueta.setForeground(EstiloModerno.TEXTO_PRINCIPAL);
+        panel.add(etiqueta);
+        panel.add(campo);
     }
     
     private void configurarEventos() {
         // los eventos ya se configuraron en configurarLayout
     }
     
+    // resultado de la lectura inicial: cursor de cambios, primera página y total
+    private static final class PrimeraCarga {
+        CursorCambios cursor;
+        List<Medicamento> pagina;
+        int tamanoPagina;
+        int total;
+    }
+    
     public void cargarDatos() {
-        modelo.setRowCount(0); // limpiar tabla
-        
-        List<Medicamento> medicamentos;
-        if (usarMySQL && baseDatosMySQL != null) {
-            medicamentos = baseDatosMySQL.obtenerTodosLosMedicamentos();
-        } else {
-            medicamentos = baseDatosXML.obtenerTodosLosMedicamentos();
+        limpiarTabla();
+        cursorSiguiente = null;
+        hayMasPaginas = false;
+        residente = false;
+        busquedaCargada = null;
+        
+        // la carga sigue con el almacenamiento con el que empezó aunque se cambie de modo a mitad
+        RepositorioMedicamentos repo = repositorio;
+        iniciarCarga(new CargaTabla<PrimeraCarga>(carga -> {
+            PrimeraCarga resultado = new PrimeraCarga();
+            // el cursor se toma antes de leer: un alta concurrente puede llegar dos veces (el modelo
+            // descarta el id repetido), pero no perderse; el total sale de la misma lectura que el
+            // cursor, así las altas que informe el próximo refresco no se cuentan dos veces
+            // si el total cabe en memoria se lee todo; si no, solo la primera página y el resto al hacer scroll
+            resultado.cursor = repo.obtenerCursorCambios();
+            resultado.total = resultado.cursor != null && resultado.cursor.tieneTotal()
+                    ? resultado.cursor.getTotal() : repo.obtenerTotalMedicamentos();
+            resultado.tamanoPagina = resultado.total <= LIMITE_RESIDENTE ? LIMITE_RESIDENTE : TAMANO_PAGINA;
+            resultado.pagina = repo.obtenerPagina(null, resultado.tamanoPagina);
+            return resultado;
+        }, resultado -> {
+            cursorCambios = resultado.cursor;
+            agregarPagina(resultado.pagina, resultado.tamanoPagina);
+            totalRegistros = resultado.total;
+            mostrarTotal();
+        }));
+    }
+    
+    private void cargarSiguientePagina() {
+        if (!hayMasPaginas || cargaEnCurso != null) {
+            return; // al terminar la carga activa se vuelve a mirar el scroll
         }
-        
+        CursorPagina desde = cursorSiguiente;
+        RepositorioMedicamentos repo = repositorio;
+        iniciarCarga(new CargaTabla<List<Medicamento>>(carga -> repo.obtenerPagina(desde, TAMANO_PAGINA),
+                pagina -> agregarPagina(pagina, TAMANO_PAGINA)));
+    }
+    
+    private void agregarPagina(List<Medicamento> pagina, int tamanoPedido) {
+        hayMasPaginas = pagina.size() == tamanoPedido;
+        // al llegar a la última página de la vista sin filtros la tabla tiene todo
+        residente = !hayMasPaginas;
+        if (!pagina.isEmpty()) {
+            cursorSiguiente = CursorPagina.despuesDe(pagina.get(pagina.size() - 1));
+        }
+        agregarFilas(pagina);
+    }
+    
+    // al acercarse al final de lo cargado se pide la siguiente página
+    private void verificarFinDeScroll() {
+        // sin mostrarse la vista no tiene tamaño y parecería estar siempre al final
+        if (barraScroll == null || !tablaMedicamentos.isShowing()) {
+            return;
+        }
+        BoundedRangeModel barra = barraScroll.getModel();
+        int margen = tablaMedicamentos.getRowHeight() * 20;
+        if (hayMasPaginas && barra.getValue() + barra.getExtent() >= barra.getMaximum() - margen) {
+            cargarSiguientePagina();
+        }
+    }
+    
+    private void limpiarTabla() {
+        modelo.limpiar();
+        if (coincidencias != null) {
+            coincidencias.clear(); // los nombres que vuelvan a llegar se anotan de nuevo
+        }
+        if (!hayOrdenador()) {
+            // con la tabla vacía vuelve el orden y filtro en memoria
+            tablaMedicamentos.setRowSorter(ordenador);
+            ordenador.allRowsChanged();
+            ordenador.setRowFilter(filtroLocal == null ? null : filtro(filtroLocal));
+        }
+    }
+    
+    private boolean hayOrdenador() {
+        return tablaMedicamentos.getRowSorter() != null;
+    }
+    
+    private void agregarFilas(List<Medicamento> medicamentos) {
+        anotarCoincidencias(medicamentos);
+        modelo.agregar(filasParaModelo(medicamentos));
+    }
+    
+    // con ordenador las filas entran todas y él filtra; sin él solo entran las que pasan el filtro local
+    private List<Medicamento> filasParaModelo(List<Medicamento> medicamentos) {
+        if (hayOrdenador() && modelo.getRowCount() + medicamentos.size() > LIMITE_ORDEN) {
+            quitarOrdenador();
+        }
+        if (hayOrdenador() || filtroLocal == null) {
+            return medicamentos;
+        }
+        List<Medicamento> aceptados = new ArrayList<>();
         for (Medicamento med : medicamentos) {
-            Object[] fila = {
-                med.getNombre(),
-                med.getTipo(),
-                med.getCantidad(),
-                med.getDistribuidor(),
-                med.getSucursalesString(),
-                med.getFecha()
-            };
-            modelo.addRow(fila);
+            if (filtroLocal.test(med)) {
+                aceptados.add(med);
+            }
         }
-        
-        // mostrar estadisticas
-        mostrarEstadisticas();
+        return aceptados;
+    }
+    
+    // pasada la ventana en memoria: se quita el ordenador y se descartan las filas cargadas que el filtro ocultaba
+    private void quitarOrdenador() {
+        tablaMedicamentos.setRowSorter(null);
+        if (filtroLocal != null) {
+            List<Integer> ocultas = new ArrayList<>();
+            for (int fila = 0; fila < modelo.getRowCount(); fila++) {
+                Medicamento med = modelo.getMedicamento(fila);
+                if (!filtroLocal.test(med)) {
+                    ocultas.add(med.getId());
+                }
+            }
+            modelo.eliminar(ocultas);
+        }
+        System.out.println("[Registros] más de " + LIMITE_ORDEN
+                + " filas: la tabla sigue el orden del almacenamiento y filtra al cargar");
+    }
+    
+    // los nombres que llegan con una búsqueda aplicada se evalúan antes de entrar al modelo,
+    // así el ordenador ya ve (o no) las filas al recibir el evento de inserción
+    private void anotarCoincidencias(List<Medicamento> medicamentos) {
+        if (coincidencias == null) {
+            return;
+        }
+        for (Medicamento med : medicamentos) {
+            String nombre = med.getNombre();
+            if (!coincidencias.contains(nombre) && IndicePrefijos.coincide(nombre, prefijoBusqueda)) {
+                coincidencias.add(nombre);
+            }
+        }
+    }
+    
+    /**
+     * aplica a la tabla solo las altas, bajas y modificaciones posteriores al cursor
+     * las altas son las más recientes, así que van arriba (orden fecha desc de la vista paginada)
+     */
+    private void aplicarCambios(CambiosRegistro cambios) {
+        modelo.eliminar(cambios.getBajas());
+        List<Medicamento> modificaciones = cambios.getModificaciones();
+        if (!hayOrdenador() && filtroLocal != null) {
+            // sin ordenador la tabla solo tiene filas que pasan el filtro: las que dejan de pasarlo se quitan
+            List<Integer> fuera = new ArrayList<>();
+            for (Medicamento med : modificaciones) {
+                if (!filtroLocal.test(med)) {
+                    fuera.add(med.getId());
+                }
+            }
+            modelo.eliminar(fuera);
+        }
+        modelo.reemplazar(modificaciones);
+        anotarCoincidencias(cambios.getAltas());
+        modelo.agregarAlInicio(filasParaModelo(cambios.getAltas()));
+    }
+    
+    private boolean hayFiltrosActivos() {
+        return !"Todos los tipos".equals(cmbFiltroTipo.getSelectedItem())
+                || !"Todos los distribuidores".equals(cmbFiltroDistribuidor.getSelectedItem())
+                || !Sucursales.TODAS.equals(cmbFiltroSucursal.getSelectedItem());
     }
     
+    /**
+     * cambio en los combos: con todos los registros en la tabla basta con el filtro en memoria;
+     * si no, el almacenamiento devuelve el subconjunto (por índice) y el filtro en memoria
+     * solo añade los rangos
+     */
     private void aplicarFiltros() {
         String tipoSeleccionado = (String) cmbFiltroTipo.getSelectedItem();
         String distribuidorSeleccionado = (String) cmbFiltroDistribuidor.getSelectedItem();
+        String sucursalSeleccionada = (String) cmbFiltroSucursal.getSelectedItem();
         
-        modelo.setRowCount(0); // limpiar tabla
+        actualizarFiltroLocal();
+        if (residente && hayOrdenador()) {
+            return;
+        }
+        if (!hayFiltrosActivos()) {
+            if (prefijoBusqueda != null) {
+                cargarBusqueda(prefijoBusqueda);
+            } else {
+                cargarDatos(); // sin filtros se vuelve a la vista paginada
+            }
+            return;
+        }
         
-        List<Medicamento> medicamentos;
-        if (usarMySQL && baseDatosMySQL != null) {
-            medicamentos = baseDatosMySQL.obtenerMedicamentosFiltrados(tipoSeleccionado, distribuidorSeleccionado);
+        limpiarTabla();
+        hayMasPaginas = false;
+        busquedaCargada = null;
+        
+        // las filas se entregan por tandas: en mysql a medida que llegan del cursor del servidor
+        RepositorioMedicamentos repo = repositorio;
+        iniciarCarga(new CargaTabla<Void>(carga -> {
+            repo.recorrerMedicamentosFiltrados(tipoSeleccionado, distribuidorSeleccionado,
+                    sucursalSeleccionada, carga::entregar);
+            return null;
+        }, resultado -> { }));
+    }
+    
+    /**
+     * fin de la espera tras la última tecla: con la tabla completa (o ya reducida por los combos)
+     * la búsqueda es solo el filtro en memoria; en la vista paginada se pide al almacenamiento
+     * lo que contiene el texto y el índice de prefijos afina sobre eso
+     */
+    private void aplicarBusqueda() {
+        actualizarFiltroLocal();
+        if (residente && hayOrdenador()) {
+            return;
+        }
+        // sin ordenador la búsqueda solo se aplica al cargar: hay que volver a leer
+        if (!hayOrdenador() || (!hayFiltrosActivos() && !Objects.equals(prefijoBusqueda, busquedaCargada))) {
+            aplicarFiltros();
+        }
+    }
+    
+    // con ordenador los rangos filtran lo cargado al instante; sin él se recarga tras la espera
+    private void cambiarRango() {
+        if (hayOrdenador()) {
+            actualizarFiltroLocal();
         } else {
-            // Filtrado manual para XML
-            medicamentos = baseDatosXML.obtenerTodosLosMedicamentos();
-            medicamentos = medicamentos.stream()
-                .filter(med -> tipoSeleccionado.equals("Todos los tipos") || med.getTipo().equals(tipoSeleccionado))
-                .filter(med -> distribuidorSeleccionado.equals("Todos los distribuidores") || med.getDistribuidor().equals(distribuidorSeleccionado))
-                .collect(java.util.stream.Collectors.toList());
+            temporizadorRangos.restart();
+        }
+    }
+    
+    private void cargarBusqueda(String texto) {
+        limpiarTabla();
+        hayMasPaginas = false;
+        busquedaCargada = texto;
+        
+        RepositorioMedicamentos repo = repositorio;
+        iniciarCarga(new CargaTabla<Void>(carga -> {
+            for (Medicamento med : repo.buscarPorNombre(texto)) {
+                carga.entregar(med);
+            }
+            return null;
+        }, resultado -> { }));
+    }
+    
+    /**
+     * arma el filtro compuesto (and) de búsqueda, combos y rangos y lo aplica al ordenador de la tabla
+     * (sin ordenador lo usan las cargas siguientes)
+     * los rangos con texto no válido se ignoran y se marcan en rojo
+     */
+    private void actualizarFiltroLocal() {
+        List<Predicate<Medicamento>> filtros = new ArrayList<>();
+        
+        String buscado = IndicePrefijos.normalizar(txtBuscar.getText());
+        if (buscado.isEmpty()) {
+            prefijoBusqueda = null;
+            coincidencias = null;
+        } else {
+            if (!buscado.equals(prefijoBusqueda)) {
+                prefijoBusqueda = buscado;
+                coincidencias = modelo.buscarPorPrefijo(buscado);
+            }
+            Set<String> aceptados = coincidencias;
+            filtros.add(med -> aceptados.contains(med.getNombre()));
         }
         
-        for (Medicamento med : medicamentos) {
-            Object[] fila = {
-                med.getNombre(),
-                med.getTipo(),
-                med.getCantidad(),
-                med.getDistribuidor(),
-                med.getSucursalesString(),
-                med.getFecha()
-            };
-            modelo.addRow(fila);
+        String tipo = (String) cmbFiltroTipo.getSelectedItem();
+        if (!"Todos los tipos".equals(tipo)) {
+            // comparación de grupos del diccionario: un entero por fila en lugar de equalsIgnoreCase;
+            // se registra el texto del combo para que las filas que lleguen después compartan su grupo
+            int grupo = DiccionarioValores.TIPOS.grupo(DiccionarioValores.TIPOS.codigo(tipo));
+            filtros.add(med -> DiccionarioValores.TIPOS.grupo(med.getCodigoTipo()) == grupo);
+        }
+        String distribuidor = (String) cmbFiltroDistribuidor.getSelectedItem();
+        if (!"Todos los distribuidores".equals(distribuidor)) {
+            int grupo = DiccionarioValores.DISTRIBUIDORES.grupo(DiccionarioValores.DISTRIBUIDORES.codigo(distribuidor));
+            filtros.add(med -> DiccionarioValores.DISTRIBUIDORES.grupo(med.getCodigoDistribuidor()) == grupo);
+        }
+        String sucursal = (String) cmbFiltroSucursal.getSelectedItem();
+        if (!Sucursales.TODAS.equals(sucursal)) {
+            int bit = Sucursales.bit(sucursal);
+            filtros.add(med -> med.estaEnSucursal(bit));
+        }
+        
+        // comparación de milisegundos: no obliga a formatear la fecha de cada fila
+        String desde = leerFecha(txtFechaDesde);
+        if (desde != null) {
+            long inicio = FechaRegistro.aMillis(desde);
+            filtros.add(med -> med.getFechaMillis() >= inicio);
+        }
+        String hasta = leerFecha(txtFechaHasta);
+        if (hasta != null) {
+            long finDelDia = FechaRegistro.aMillis(hasta + " 23:59:59");
+            filtros.add(med -> med.getFechaMillis() <= finDelDia);
+        }
+        Integer minimo = leerCantidad(txtCantidadMin);
+        if (minimo != null) {
+            filtros.add(med -> med.getCantidad() >= minimo);
+        }
+        Integer maximo = leerCantidad(txtCantidadMax);
+        if (maximo != null) {
+            filtros.add(med -> med.getCantidad() <= maximo);
+        }
+        
+        filtroLocal = filtros.isEmpty() ? null : filtros.stream().reduce(Predicate::and).get();
+        if (hayOrdenador()) {
+            ordenador.setRowFilter(filtroLocal == null ? null : filtro(filtroLocal));
+        }
+    }
+    
+    // evalúa directamente sobre el medicamento de la fila, sin pasar por el texto de las celdas
+    private static RowFilter<ModeloTablaMedicamentos, Integer> filtro(Predicate<Medicamento> condicion) {
+        return new RowFilter<ModeloTablaMedicamentos, Integer>() {
+            @Override
+            public boolean include(Entry<? extends ModeloTablaMedicamentos, ? extends Integer> fila) {
+                return condicion.test(fila.getModel().getMedicamento(fila.getIdentifier()));
+            }
+        };
+    }
+    
+    private static String leerFecha(JTextField campo) {
+        String texto = campo.getText().trim();
+        boolean valida = true;
+        try {
+            if (!texto.isEmpty()) {
+                LocalDate.parse(texto);
+                valida = texto.length() == 10;   // sin años de más de cuatro cifras
+            }
+        } catch (DateTimeParseException e) {
+            valida = false;
+        }
+        marcarCampo(campo, valida);
+        return texto.isEmpty() || !valida ? null : texto;
+    }
+    
+    private static Integer leerCantidad(JTextField campo) {
+        String texto = campo.getText().trim();
+        Integer valor = null;
+        boolean valida = true;
+        try {
+            if (!texto.isEmpty()) {
+                valor = Integer.parseInt(texto);
+            }
+        } catch (NumberFormatException e) {
+            valida = false;
         }
+        marcarCampo(campo, valida);
+        return valor;
+    }
+    
+    private static void marcarCampo(JTextField campo, boolean valido) {
+        campo.setForeground(valido ? EstiloModerno.TEXTO_PRINCIPAL : EstiloModerno.ERROR);
     }
     
     private void eliminarSeleccionado() {
@@ -221,30 +660,41 @@ public class PanelRegistros extends JPanel {
             return;
         }
         
-        String nombre = (String) modelo.getValueAt(filaSeleccionada, 0);
-        String fecha = (String) modelo.getValueAt(filaSeleccionada, 5);
+        // la fila seleccionada es de la vista (ordenada y filtrada), no del modelo
+        Medicamento seleccionado = modelo.getMedicamento(tablaMedicamentos.convertRowIndexToModel(filaSeleccionada));
+        String nombre = seleccionado.getNombre();
         
         int confirmacion = JOptionPane.showConfirmDialog(this,
             "¿Está seguro de que desea eliminar el medicamento '" + nombre + "'?",
             "Confirmar eliminación", JOptionPane.YES_NO_OPTION);
         
         if (confirmacion == JOptionPane.YES_OPTION) {
-            if (usarMySQL && baseDatosMySQL != null) {
-                boolean eliminado = baseDatosMySQL.eliminarMedicamento(nombre, fecha);
-                if (eliminado) {
-                    cargarDatos();
-                    JOptionPane.showMessageDialog(this, "Medicamento eliminado exitosamente.",
-                                                "Eliminado", JOptionPane.INFORMATION_MESSAGE);
-                } else {
-                    JOptionPane.showMessageDialog(this, "Error al eliminar el medicamento.",
-                                                "Error", JOptionPane.ERROR_MESSAGE);
+            // se elimina por id: el par nombre/fecha no distingue dos pedidos iguales en el mismo segundo
+            RepositorioMedicamentos repo = repositorio;
+            TareasSegundoPlano.ejecutar(new SwingWorker<Boolean, Void>() {
+                @Override
+                protected Boolean doInBackground() {
+                    return repo.eliminarMedicamentoPorId(seleccionado.getId());
                 }
-            } else {
-                baseDatosXML.eliminarMedicamento(nombre, fecha);
-                cargarDatos();
-                JOptionPane.showMessageDialog(this, "Medicamento eliminado exitosamente.",
-                                            "Eliminado", JOptionPane.INFORMATION_MESSAGE);
-            }
+                
+                @Override
+                protected void done() {
+                    boolean eliminado;
+                    try {
+                        eliminado = get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        eliminado = false;
+                    }
+                    if (eliminado) {
+                        actualizarDatos();
+                        JOptionPane.showMessageDialog(PanelRegistros.this, "Medicamento eliminado exitosamente.",
+                                                    "Eliminado", JOptionPane.INFORMATION_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(PanelRegistros.this, "Error al eliminar el medicamento.",
+                                                    "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            });
         }
     }
     
@@ -260,29 +710,165 @@ public class PanelRegistros extends JPanel {
         }
     }
     
-    private void mostrarEstadisticas() {
-        int totalMedicamentos;
-        if (usarMySQL && baseDatosMySQL != null) {
-            totalMedicamentos = baseDatosMySQL.obtenerTotalMedicamentos();
-        } else {
-            totalMedicamentos = baseDatosXML.obtenerTotalMedicamentos();
-        }
+    private void mostrarTotal() {
         // actualizar el titulo de la pestaña si es posible
         Container parent = getParent();
         if (parent instanceof JTabbedPane) {
             JTabbedPane tabbedPane = (JTabbedPane) parent;
             int index = tabbedPane.indexOfComponent(this);
             if (index != -1) {
-                tabbedPane.setTitleAt(index, "Registros (" + totalMedicamentos + ")");
+                tabbedPane.setTitleAt(index, "Registros (" + totalRegistros + ")");
             }
         }
     }
     
+    /**
+     * refresco tras un alta o baja: pide solo los cambios desde la última lectura
+     * y los aplica al modelo; sin cursor válido (primera vez, cambio de modo o bajas ya
+     * olvidadas por el almacenamiento) recarga todo
+     */
     public void actualizarDatos() {
-        cargarDatos();
+        if (cursorCambios == null) {
+            cargarDatos();
+            return;
+        }
+        if (cargaEnCurso != null) {
+            // no se interrumpe la carga activa: el refresco se hace cuando termine
+            actualizacionPendiente = true;
+            return;
+        }
+        
+        CursorCambios desde = cursorCambios;
+        RepositorioMedicamentos repo = repositorio;
+        iniciarCarga(new CargaTabla<CambiosRegistro>(carga -> repo.obtenerCambiosDesde(desde),
+                this::aplicarResultadoCambios));
+    }
+    
+    private void aplicarResultadoCambios(CambiosRegistro cambios) {
+        if (cambios == null || cambios.isRecargar()) {
+            cargarDatos();
+            return;
+        }
+        
+        cursorCambios = cambios.getCursor();
+        int total = cursorCambios.tieneTotal() ? cursorCambios.getTotal()
+                : totalRegistros + cambios.getAltas().size() - cambios.getBajas().size();
+        if (!cambios.estaVacio()) {
+            if ((hayFiltrosActivos() || prefijoBusqueda != null) && !residente) {
+                aplicarFiltros(); // las consultas filtradas ya van por índice
+            } else {
+                aplicarCambios(cambios);
+            }
+        }
+        // el total del cursor manda sobre la suma de altas y bajas: en mysql un alta borrada antes
+        // de leerse no llega como fila, pero su baja se informa después
+        if (total != totalRegistros) {
+            totalRegistros = total;
+            mostrarTotal();
+        }
+    }
+    
+    /**
+     * cambio de modo: las lecturas siguientes van al nuevo almacenamiento
+     */
+    public void usarRepositorio(RepositorioMedicamentos nuevoRepositorio) {
+        this.repositorio = nuevoRepositorio;
+        this.cursorCambios = null; // el cursor pertenece al almacenamiento anterior
+    }
+    
+    // ===================== carga en segundo plano =====================
+    
+    // lectura que corre fuera del hilo de eventos; puede entregar filas por tandas con carga.entregar
+    private interface Lectura<T> {
+        T leer(CargaTabla<T> carga) throws Exception;
+    }
+    
+    // cancela la carga activa (sus resultados se descartan) y lanza la nueva
+    private void iniciarCarga(CargaTabla<?> carga) {
+        if (cargaEnCurso != null) {
+            cargaEnCurso.cancel(true);
+        }
+        cargaEnCurso = carga;
+        barraProgreso.setString("Cargando...");
+        barraProgreso.setVisible(true);
+        TareasSegundoPlano.ejecutar(carga);
     }
     
-    public void actualizarModo(boolean nuevoModoMySQL) {
-        this.usarMySQL = nuevoModoMySQL;
+    /**
+     * carga de la tabla en el ejecutor de persistencia
+     * las filas entregadas durante la lectura se agregan a la tabla por tandas;
+     * el resultado final se aplica en el hilo de eventos solo si la carga no fue reemplazada
+     */
+    private final class CargaTabla<T> extends SwingWorker<T, Medicamento> {
+        private final Lectura<T> lectura;
+        private final Consumer<T> alTerminar;
+        private final List<Medicamento> tanda = new ArrayList<>();
+        
+        CargaTabla(Lectura<T> lectura, Consumer<T> alTerminar) {
+            this.lectura = lectura;
+            this.alTerminar = alTerminar;
+        }
+        
+        // hilo de fondo: una carga cancelada deja de leer en la siguiente fila
+        void entregar(Medicamento med) {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            tanda.add(med);
+            if (tanda.size() == TAMANO_TANDA) {
+                publicarTanda();
+            }
+        }
+        
+        private void publicarTanda() {
+            if (!tanda.isEmpty()) {
+                publish(tanda.toArray(new Medicamento[0]));
+                tanda.clear();
+            }
+        }
+        
+        @Override
+        protected T doInBackground() throws Exception {
+            T resultado = lectura.leer(this);
+            publicarTanda();
+            return resultado;
+        }
+        
+        @Override
+        protected void process(List<Medicamento> filas) {
+            if (isCancelled()) {
+                return;
+            }
+            agregarFilas(filas);
+            barraProgreso.setString("Cargando... " + modelo.getRowCount() + " registros");
+        }
+        
+        @Override
+        protected void done() {
+            if (cargaEnCurso == this) {
+                cargaEnCurso = null;
+                barraProgreso.setVisible(false);
+            }
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                alTerminar.accept(get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.err.println("[Registros] Error al cargar datos: " + e.getCause());
+            }
+            
+            if (cargaEnCurso == null) {
+                if (actualizacionPendiente) {
+                    actualizacionPendiente = false;
+                    actualizarDatos();
+                } else {
+                    // la tabla puede no llenar la vista o el usuario ya estar al final
+                    SwingUtilities.invokeLater(PanelRegistros.this::verificarFinDeScroll);
+                }
+            }
+        }
     }
 }
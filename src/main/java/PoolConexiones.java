@@ -0,0 +1,235 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.*;
+
+/**
+ * pool acotado de conexiones jdbc sin dependencias externas
+ * - como máximo maxConexiones prestadas a la vez; el resto espera hasta timeoutPrestamoMs
+ * - las conexiones libres que llevan un rato sin uso se validan antes de prestarse; una devuelta
+ *   hace instantes no paga el viaje de isValid (en ráfagas de consultas sería uno por préstamo)
+ * - un hilo de mantenimiento cierra las que llevan demasiado tiempo ociosas
+ * - ninguna conexión sobrevive a su vida máxima
+ * las conexiones prestadas son proxies: close() las devuelve al pool en lugar de cerrarlas,
+ * así los dao pueden usarlas en try-with-resources
+ */
+public class PoolConexiones implements AutoCloseable {
+
+    /**
+     * crea una conexión física nueva (con los reintentos que decida el llamador)
+     */
+    public interface FabricaConexiones {
+        Connection crear() throws SQLException;
+    }
+
+    // conexión física junto con los datos para decidir si sigue siendo utilizable
+    private static final class Entrada {
+        final Connection conexion;
+        final long creada = System.currentTimeMillis();
+        long ultimoUso = creada;
+
+        Entrada(Connection conexion) {
+            this.conexion = conexion;
+        }
+    }
+
+    private static final int TIMEOUT_VALIDACION_SEG = 2;
+
+    private final FabricaConexiones fabrica;
+    private final int maxConexiones;
+    private final long timeoutPrestamoMs;
+    private final long maxOciosaMs;
+    private final long vidaMaximaMs;
+    private final long validarTrasMs;
+
+    private final Semaphore permisos;
+    private final Deque<Entrada> libres = new ArrayDeque<>();   // lifo: se reutiliza primero la más reciente
+    private final ScheduledExecutorService mantenimiento;
+    private volatile boolean cerrado = false;
+
+    /**
+     * @param fabrica creador de conexiones físicas
+     * @param maxConexiones máximo de conexiones abiertas a la vez
+     * @param timeoutPrestamoMs espera máxima para obtener una conexión
+     * @param maxOciosaMs tiempo sin uso tras el cual se cierra una conexión libre
+     * @param vidaMaximaMs edad máxima de una conexión física
+     * @param validarTrasMs tiempo sin uso a partir del cual una conexión libre se valida antes de prestarse
+     *                      (0 = validar siempre)
+     */
+    public PoolConexiones(FabricaConexiones fabrica, int maxConexiones, long timeoutPrestamoMs,
+                          long maxOciosaMs, long vidaMaximaMs, long validarTrasMs) {
+        this.fabrica = fabrica;
+        this.maxConexiones = maxConexiones;
+        this.timeoutPrestamoMs = timeoutPrestamoMs;
+        this.maxOciosaMs = maxOciosaMs;
+        this.vidaMaximaMs = vidaMaximaMs;
+        this.validarTrasMs = validarTrasMs;
+        this.permisos = new Semaphore(maxConexiones, true);
+
+        mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "mysql-pool-mantenimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long periodo = Math.max(1000L, Math.min(maxOciosaMs, vidaMaximaMs) / 2);
+        mantenimiento.scheduleWithFixedDelay(this::desalojarOciosas, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * presta una conexión; debe cerrarse (idealmente con try-with-resources) para devolverla
+     * @throws SQLException si el pool está cerrado, se agota la espera o no se puede conectar
+     */
+    public Connection obtener() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("pool de conexiones cerrado");
+        }
+        try {
+            if (!permisos.tryAcquire(timeoutPrestamoMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("tiempo de espera agotado obteniendo conexión (" + maxConexiones + " en uso)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrumpido esperando conexión", e);
+        }
+
+        try {
+            Entrada entrada;
+            while ((entrada = tomarLibre()) != null) {
+                if (esUtilizable(entrada) && (recienUsada(entrada) || entrada.conexion.isValid(TIMEOUT_VALIDACION_SEG))) {
+                    return envolver(entrada);
+                }
+                cerrarFisica(entrada);
+            }
+            return envolver(new Entrada(fabrica.crear()));
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    private synchronized Entrada tomarLibre() {
+        return libres.pollFirst();
+    }
+
+    // llamado cuando el código cliente cierra el proxy
+    private void devolver(Entrada entrada) {
+        try {
+            boolean reutilizable = !cerrado && esUtilizable(entrada) && !entrada.conexion.isClosed();
+            if (reutilizable && !entrada.conexion.getAutoCommit()) {
+                // una transacción que quedó abierta no debe filtrarse al siguiente usuario
+                entrada.conexion.rollback();
+                entrada.conexion.setAutoCommit(true);
+            }
+            if (reutilizable) {
+                entrada.ultimoUso = System.currentTimeMillis();
+                synchronized (this) {
+                    libres.offerFirst(entrada);
+                }
+            } else {
+                cerrarFisica(entrada);
+            }
+        } catch (SQLException e) {
+            cerrarFisica(entrada);
+        } finally {
+            permisos.release();
+        }
+    }
+
+    private boolean esUtilizable(Entrada entrada) {
+        return System.currentTimeMillis() - entrada.creada < vidaMaximaMs;
+    }
+
+    // una conexión que se usó hace menos de validarTrasMs se presta sin validar: si el servidor la
+    // cortó justo en ese lapso, la consulta falla y el llamador la maneja como cualquier error de red
+    private boolean recienUsada(Entrada entrada) {
+        return System.currentTimeMillis() - entrada.ultimoUso < validarTrasMs;
+    }
+
+    private void desalojarOciosas() {
+        long ahora = System.currentTimeMillis();
+        synchronized (this) {
+            for (Iterator<Entrada> it = libres.iterator(); it.hasNext(); ) {
+                Entrada entrada = it.next();
+                if (ahora - entrada.ultimoUso >= maxOciosaMs || !esUtilizable(entrada)) {
+                    it.remove();
+                    cerrarFisica(entrada);
+                }
+            }
+        }
+    }
+
+    private static void cerrarFisica(Entrada entrada) {
+        try {
+            entrada.conexion.close();
+        } catch (SQLException ignorada) {
+            // la conexión ya no sirve de todas formas
+        }
+    }
+
+    private Connection envolver(Entrada entrada) {
+        InvocationHandler manejador = new InvocationHandler() {
+            private boolean devuelta = false;
+
+            @Override
+            public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+                switch (metodo.getName()) {
+                    case "close":
+                        if (!devuelta) {
+                            devuelta = true;
+                            devolver(entrada);
+                        }
+                        return null;
+                    case "isClosed":
+                        return devuelta || entrada.conexion.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "PoolConexiones$Conexion[" + entrada.conexion + "]";
+                    default:
+                        if (devuelta) {
+                            throw new SQLException("la conexión ya fue devuelta al pool");
+                        }
+                        try {
+                            return metodo.invoke(entrada.conexion, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, manejador);
+    }
+
+    public boolean isCerrado() {
+        return cerrado;
+    }
+
+    /**
+     * resumen para logs: conexiones en uso, libres y máximo
+     */
+    public synchronized String obtenerEstado() {
+        int enUso = maxConexiones - permisos.availablePermits();
+        return "en uso=" + enUso + ", libres=" + libres.size() + ", max=" + maxConexiones;
+    }
+
+    @Override
+    public void close() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+        synchronized (this) {
+            for (Entrada entrada : libres) {
+                cerrarFisica(entrada);
+            }
+            libres.clear();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * decorador de lectura con cache lru acotada por cantidad de filas
+ * las consultas repetidas (páginas, filtros, búsquedas por nombre, total) se responden sin ir
+ * al almacenamiento; toda escritura hecha a través del decorador vacía la cache, y también
+ * cuando el cursor de cambios revela altas, bajas o modificaciones hechas desde otra instancia
+ *
+ * no se guardan los recorridos completos ni las estadísticas (el almacenamiento ya las mantiene
+ * incrementalmente), ni resultados vacíos: con mysql un error también devuelve una lista vacía
+ */
+public class RepositorioConCache implements RepositorioMedicamentos {
+    private static final int MAX_FILAS_POR_DEFECTO = 20000;
+    private static final int COMPROBAR_CADA_MS_POR_DEFECTO = 1000;
+
+    private static final class Entrada {
+        final Object valor;
+        final int filas;
+
+        Entrada(Object valor, int filas) {
+            this.valor = valor;
+            this.filas = filas;
+        }
+    }
+
+    // lectura del almacenamiento que se hace al no encontrar la clave
+    private interface Lectura<T> {
+        T leer();
+    }
+
+    private final RepositorioMedicamentos delegado;
+    private final int maxFilas;
+    // en orden de acceso: el primero es el usado hace más tiempo
+    private final LinkedHashMap<List<Object>, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+    private int filasEnCache = 0;
+    private long generacion = 0;        // cambia con cada invalidación; una lectura iniciada antes no se guarda
+    private CursorCambios ultimoCursor; // último estado visto del almacenamiento
+    private final long comprobarCadaNanos;
+    private long ultimaComprobacion;    // System.nanoTime() de la última vez que se leyó el cursor
+    private long aciertos = 0;
+    private long fallos = 0;
+
+    /**
+     * @param delegado almacenamiento real
+     * @param maxFilas medicamentos que puede retener la cache entre todas sus entradas
+     */
+    public RepositorioConCache(RepositorioMedicamentos delegado, int maxFilas) {
+        this(delegado, maxFilas, COMPROBAR_CADA_MS_POR_DEFECTO);
+    }
+
+    /**
+     * @param comprobarCadaMs tiempo durante el que un acierto se responde sin volver a pedir los
+     *                        cambios del almacenamiento (0 = comprobar en cada acierto)
+     */
+    public RepositorioConCache(RepositorioMedicamentos delegado, int maxFilas, long comprobarCadaMs) {
+        this.delegado = delegado;
+        this.maxFilas = maxFilas;
+        this.comprobarCadaNanos = comprobarCadaMs * 1_000_000L;
+    }
+
+    /**
+     * envuelve el almacenamiento con el tamaño de repositorio.cache.maxFilas (0 = sin cache) y la
+     * espera repositorio.cache.comprobarCadaMs, leídos de xml.properties / mysql.properties
+     */
+    public static RepositorioMedicamentos envolver(RepositorioMedicamentos delegado) {
+        int maxFilas = Configuracion.entero("repositorio.cache.maxFilas", MAX_FILAS_POR_DEFECTO);
+        int comprobarCadaMs = Configuracion.entero("repositorio.cache.comprobarCadaMs", COMPROBAR_CADA_MS_POR_DEFECTO);
+        return maxFilas > 0 ? new RepositorioConCache(delegado, maxFilas, comprobarCadaMs) : delegado;
+    }
+
+    // ===================== escrituras: delegan y vacían la cache =====================
+
+    @Override
+    public int agregarMedicamento(String nombre, String tipo, int cantidad, String distribuidor, List<String> sucursales) {
+        try {
+            return delegado.agregarMedicamento(nombre, tipo, cantidad, distribuidor, sucursales);
+        } finally {
+            invalidar();
+        }
+    }
+
+    @Override
+    public List<Integer> agregarMedicamentos(List<Medicamento> medicamentos) {
+        try {
+            return delegado.agregarMedicamentos(medicamentos);
+        } finally {
+            invalidar();
+        }
+    }
+
+    @Override
+    public boolean eliminarMedicamentoPorId(int id) {
+        try {
+            return delegado.eliminarMedicamentoPorId(id);
+        } finally {
+            invalidar();
+        }
+    }
+
+    @Override
+    public boolean actualizarCantidad(int id, int nuevaCantidad) {
+        try {
+            return delegado.actualizarCantidad(id, nuevaCantidad);
+        } finally {
+            invalidar();
+        }
+    }
+
+    // ===================== lecturas en cache =====================
+
+    @Override
+    public List<Medicamento> obtenerMedicamentosFiltrados(String tipo, String distribuidor, String sucursal) {
+        List<Object> clave = Arrays.asList("filtrados", tipo, distribuidor, sucursal);
+        comprobarSiEnCache(clave);
+        return copia(leer(clave, () -> delegado.obtenerMedicamentosFiltrados(tipo, distribuidor, sucursal), List::size));
+    }
+
+    @Override
+    public int recorrerMedicamentosFiltrados(String tipo, String distribuidor, String sucursal,
+                                             Consumer<Medicamento> consumidor) {
+        List<Object> clave = Arrays.asList("filtrados", tipo, distribuidor, sucursal);
+        comprobarSiEnCache(clave);
+        long generacionLectura;
+        List<Medicamento> guardados = null;
+        synchronized (this) {
+            Entrada entrada = buscar(clave);
+            if (entrada != null) {
+                @SuppressWarnings("unchecked")
+                List<Medicamento> valor = (List<Medicamento>) entrada.valor;
+                guardados = valor;
+            }
+            generacionLectura = generacion;
+        }
+        if (guardados != null) {
+            // la lista guardada no se modifica nunca (cada llamador recibe copias): se recorre sin el
+            // candado, así un consumidor lento (la tabla) no frena las demás consultas a la cache
+            guardados.forEach(consumidor);
+            return guardados.size();
+        }
+
+        // se entrega en streaming y a la vez se junta el resultado mientras quepa en la cache
+        List<Medicamento> leidos = new ArrayList<>();
+        boolean[] cabe = {true};
+        int total = delegado.recorrerMedicamentosFiltrados(tipo, distribuidor, sucursal, med -> {
+            if (cabe[0]) {
+                leidos.add(med);
+                if (leidos.size() > maxFilas) {
+                    cabe[0] = false;
+                    leidos.clear();
+                }
+            }
+            consumidor.accept(med);
+        });
+        if (cabe[0]) {
+            guardar(clave, leidos, leidos.size(), generacionLectura);
+        }
+        return total;
+    }
+
+    @Override
+    public List<Medicamento> obtenerPagina(CursorPagina despuesDe, int tamano) {
+        List<Object> clave = despuesDe == null
+                ? Arrays.asList("pagina", tamano)
+                : Arrays.asList("pagina", tamano, despuesDe.getFechaMillis(), despuesDe.getId());
+        return copia(leer(clave, () -> delegado.obtenerPagina(despuesDe, tamano), List::size));
+    }
+
+    @Override
+    public List<Medicamento> buscarPorNombre(String patron) {
+        List<Object> clave = Arrays.asList("nombre", patron);
+        comprobarSiEnCache(clave);
+        return copia(leer(clave, () -> delegado.buscarPorNombre(patron), List::size));
+    }
+
+    @Override
+    public Map<String, String> obtenerNombresRegistrados() {
+        List<Object> clave = Collections.singletonList("nombres");
+        comprobarSiEnCache(clave);
+        return new LinkedHashMap<>(leer(clave, delegado::obtenerNombresRegistrados, Map::size));
+    }
+
+    @Override
+    public int obtenerTotalMedicamentos() {
+        List<Object> clave = Collections.singletonList("total");
+        comprobarSiEnCache(clave);
+        return leer(clave, delegado::obtenerTotalMedicamentos, total -> total > 0 ? 1 : 0);
+    }
+
+    // ===================== sin cache =====================
+
+    @Override
+    public List<Medicamento> obtenerTodosLosMedicamentos() {
+        return delegado.obtenerTodosLosMedicamentos();
+    }
+
+    @Override
+    public int recorrerMedicamentos(Consumer<Medicamento> consumidor) {
+        return delegado.recorrerMedicamentos(consumidor);
+    }
+
+    @Override
+    public EstadisticasInventario obtenerEstadisticas() {
+        return delegado.obtenerEstadisticas();
+    }
+
+    /**
+     * si el almacenamiento cambió desde el último cursor visto (otra instancia escribió) se vacía la cache
+     */
+    @Override
+    public CursorCambios obtenerCursorCambios() {
+        CursorCambios actual = delegado.obtenerCursorCambios();
+        anotarCursor(actual);
+        return actual;
+    }
+
+    @Override
+    public CambiosRegistro obtenerCambiosDesde(CursorCambios desde) {
+        CambiosRegistro cambios = delegado.obtenerCambiosDesde(desde);
+        if (cambios == null || cambios.isRecargar() || !cambios.estaVacio()) {
+            invalidar();
+        }
+        if (cambios != null) {
+            anotarCursor(cambios.getCursor());
+        }
+        return cambios;
+    }
+
+    @Override
+    public void close() {
+        System.out.println("[Cache] " + obtenerEstado());
+        invalidar();
+        delegado.close();
+    }
+
+    // ===================== mecanismo lru =====================
+
+    /**
+     * resumen para logs: entradas, filas retenidas, aciertos y fallos
+     */
+    public synchronized String obtenerEstado() {
+        return "entradas=" + entradas.size() + ", filas=" + filasEnCache + "/" + maxFilas
+                + ", aciertos=" + aciertos + ", fallos=" + fallos;
+    }
+
+    public synchronized void invalidar() {
+        entradas.clear();
+        filasEnCache = 0;
+        generacion++;
+    }
+
+    /**
+     * las páginas se piden después de obtenerCursorCambios (cargarDatos), que ya vacía la cache si
+     * otra instancia escribió; los filtros, búsquedas, nombres y total no pasan por el cursor, así que
+     * antes de responderlos desde la cache se piden los cambios desde el último cursor visto
+     * (sin cambios es una consulta de marcas; con cambios la cache se vacía y se lee de nuevo)
+     * la comprobación se hace a lo sumo una vez cada comprobarCadaMs: entre tanto los aciertos no
+     * van al almacenamiento y un cambio de otra instancia puede tardar ese tiempo en verse
+     */
+    private void comprobarSiEnCache(List<Object> clave) {
+        CursorCambios visto;
+        synchronized (this) {
+            if (!entradas.containsKey(clave)) {
+                return;
+            }
+            long ahora = System.nanoTime();
+            if (ultimoCursor != null && ahora - ultimaComprobacion < comprobarCadaNanos) {
+                return;
+            }
+            ultimaComprobacion = ahora;
+            visto = ultimoCursor;
+        }
+        if (visto == null) {
+            // la entrada se guardó sin un cursor con qué compararla
+            obtenerCursorCambios();
+            invalidar();
+        } else {
+            obtenerCambiosDesde(visto);
+        }
+    }
+
+    private synchronized void anotarCursor(CursorCambios actual) {
+        if (actual == null || (ultimoCursor != null && (actual.getUltimaAlta() != ultimoCursor.getUltimaAlta()
+                || actual.getUltimoCambio() != ultimoCursor.getUltimoCambio()))) {
+            invalidar();
+        }
+        ultimoCursor = actual;
+        ultimaComprobacion = System.nanoTime();
+    }
+
+    /**
+     * valor en cache o leído del almacenamiento
+     * @param filas peso del valor en filas; 0 = no guardarlo
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T leer(List<Object> clave, Lectura<T> lectura, ToIntFunction<T> filas) {
+        long generacionLectura;
+        synchronized (this) {
+            Entrada entrada = buscar(clave);
+            if (entrada != null) {
+                return (T) entrada.valor;
+            }
+            generacionLectura = generacion;
+        }
+        // la lectura se hace fuera del candado: otras consultas siguen resolviéndose desde la cache
+        T valor = lectura.leer();
+        if (valor != null) {
+            guardar(clave, valor, filas.applyAsInt(valor), generacionLectura);
+        }
+        return valor;
+    }
+
+    private Entrada buscar(List<Object> clave) {
+        Entrada entrada = entradas.get(clave);
+        if (entrada != null) {
+            aciertos++;
+        } else {
+            fallos++;
+        }
+        return entrada;
+    }
+
+    private synchronized void guardar(List<Object> clave, Object valor, int filas, long generacionLectura) {
+        // una escritura durante la lectura pudo dejar el valor viejo; los demasiado grandes no se guardan
+        if (filas <= 0 || filas > maxFilas || generacionLectura != generacion) {
+            return;
+        }
+        Entrada anterior = entradas.put(clave, new Entrada(valor, filas));
+        if (anterior != null) {
+            filasEnCache -= anterior.filas;
+        }
+        filasEnCache += filas;
+
+        Iterator<Entrada> masViejas = entradas.values().iterator();
+        while (filasEnCache > maxFilas && masViejas.hasNext()) {
+            filasEnCache -= masViejas.next().filas;
+            masViejas.remove();
+        }
+    }
+
+    private static <T> List<T> copia(List<T> lista) {
+        return new ArrayList<>(lista);
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * operaciones de persistencia que usa la interfaz, comunes al almacenamiento xml y a mysql
+ * la ventana trabaja siempre contra la implementación activa; cambiar de modo es reemplazarla,
+ * y decoradores como RepositorioConCache se componen sin tocar los llamadores
+ */
+public interface RepositorioMedicamentos extends AutoCloseable {
+
+    /**
+     * @return id asignado al nuevo registro, 0 si no se pudo guardar
+     */
+    int agregarMedicamento(String nombre, String tipo, int cantidad, String distribuidor, List<String> sucursales);
+
+    /**
+     * alta en lote; la fecha y el id de cada medicamento se ignoran
+     * @return ids asignados, en el mismo orden
+     */
+    List<Integer> agregarMedicamentos(List<Medicamento> medicamentos);
+
+    boolean eliminarMedicamentoPorId(int id);
+
+    boolean actualizarCantidad(int id, int nuevaCantidad);
+
+    List<Medicamento> obtenerTodosLosMedicamentos();
+
+    /**
+     * entrega cada medicamento al consumidor sin armar la lista completa
+     * @return cantidad de medicamentos entregados
+     */
+    int recorrerMedicamentos(Consumer<Medicamento> consumidor);
+
+    /**
+     * @param tipo tipo o "Todos los tipos"
+     * @param distribuidor distribuidor o "Todos los distribuidores"
+     * @param sucursal sucursal o Sucursales.TODAS
+     */
+    List<Medicamento> obtenerMedicamentosFiltrados(String tipo, String distribuidor, String sucursal);
+
+    /**
+     * como obtenerMedicamentosFiltrados, entregando las filas a medida que se leen
+     * @return cantidad de medicamentos entregados
+     */
+    default int recorrerMedicamentosFiltrados(String tipo, String distribuidor, String sucursal,
+                                              Consumer<Medicamento> consumidor) {
+        List<Medicamento> filtrados = obtenerMedicamentosFiltrados(tipo, distribuidor, sucursal);
+        filtrados.forEach(consumidor);
+        return filtrados.size();
+    }
+
+    /**
+     * página por clave en orden (fecha desc, id desc)
+     * @param despuesDe última fila de la página anterior, o null para la primera página
+     */
+    List<Medicamento> obtenerPagina(CursorPagina despuesDe, int tamano);
+
+    /**
+     * medicamentos cuyo nombre contiene el patrón, más recientes primero
+     */
+    List<Medicamento> buscarPorNombre(String patron);
+
+    /**
+     * nombres distintos registrados con el tipo de su alta más reciente
+     */
+    Map<String, String> obtenerNombresRegistrados();
+
+    int obtenerTotalMedicamentos();
+
+    EstadisticasInventario obtenerEstadisticas();
+
+    /**
+     * cursor que marca el estado actual; leer todo y luego pedir cambios desde aquí
+     */
+    CursorCambios obtenerCursorCambios();
+
+    /**
+     * altas, bajas y modificaciones posteriores al cursor
+     */
+    CambiosRegistro obtenerCambiosDesde(CursorCambios desde);
+
+    @Override
+    void close();
+}
@@ -3,6 +3,7 @@ import java.awt.*;
 import java.awt.event.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.io.File;
 
 
@@ -42,6 +43,14 @@ public class SistemaPedidosFarmacia extends JFrame {
     private BaseDatosXML baseDatosXML;     // almacenamiento en archivo xml local
     private MySQLDatabase baseDatosMySQL;  // almacenamiento en base de datos mysql
     private boolean usarMySQL = false;     // flag para determinar cuál base usar
+    // almacenamiento activo para formulario y registros; cambiar de modo solo reemplaza esta referencia
+    private RepositorioMedicamentos repositorio;
+    
+    // ===================== autocompletado del nombre =====================
+    
+    // nombres del archivo de catálogo y de los registros; se arma la primera vez que se usa el campo
+    private final CatalogoMedicamentos catalogo = new CatalogoMedicamentos();
+    private boolean catalogoSolicitado = false;
     
     // ===================== componentes de navegación =====================
     
@@ -71,6 +80,8 @@ public class SistemaPedidosFarmacia extends JFrame {
         
         // inicializar sistema de persistencia xml como opción por defecto
         baseDatosXML = new BaseDatosXML();
+        // en modo journal el xml se reconstruye al salir de la aplicación
+        Runtime.getRuntime().addShutdownHook(new Thread(baseDatosXML::close));
         
         // intentar establecer conexión con mysql como opción alternativa
         try {
@@ -85,6 +96,8 @@ public class SistemaPedidosFarmacia extends JFrame {
             System.out.println("mysql no disponible, usando xml: " + e.getMessage());
             baseDatosMySQL = null;
         }
+        // mysql se consulta a través de la cache de lecturas; el xml ya responde desde memoria
+        repositorio = usarMySQL ? RepositorioConCache.envolver(baseDatosMySQL) : baseDatosXML;
         
         // organizar todos los componentes en el diseño final
         configurarLayout();
@@ -133,6 +146,14 @@ public class SistemaPedidosFarmacia extends JFrame {
         txtNombreMedicamento = new JTextField(20);
         EstiloModerno.aplicarEstiloTextField(txtNombreMedicamento); // estilo visual neón
         agregarHoverListener(txtNombreMedicamento); // efectos de hover interactivos
+        // sugerencias mientras se escribe para no crear grafías distintas del mismo medicamento
+        new AutocompletadoNombre(txtNombreMedicamento, catalogo, this::aplicarSugerencia);
+        txtNombreMedicamento.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                cargarCatalogo();
+            }
+        });
         
         // ===================== selector de tipo de medicamento =====================
         String[] tipos = {"", "analgésico", "analéptico", "anestésico", "antiácido", "antidepresivo", "antibiótico"};
@@ -574,7 +595,7 @@ public class SistemaPedidosFarmacia extends JFrame {
     
     // crear el panel de registros responsive
     private JPanel crearPanelRegistros() {
-        PanelRegistros panelRegistros = new PanelRegistros(baseDatosXML, baseDatosMySQL, usarMySQL);
+        PanelRegistros panelRegistros = new PanelRegistros(repositorio);
         
         // Hacer que el panel de registros sea responsive
         ResponsiveManager.makeResponsive(this, panelRegistros);
@@ -610,6 +631,7 @@ public class SistemaPedidosFarmacia extends JFrame {
     // Métodos para cambiar modo de base de datos
     private void cambiarAModoXML() {
         usarMySQL = false;
+        repositorio = baseDatosXML;
         actualizarInterfazModo();
         JOptionPane.showMessageDialog(this, 
             "Modo cambiado a XML.\nLos datos se guardarán en medicamentos.xml",
@@ -630,25 +652,51 @@ public class SistemaPedidosFarmacia extends JFrame {
             return;
         }
         
-        // Si baseDatosMySQL es null, intentar crear una nueva instancia
-        if (baseDatosMySQL == null) {
-            System.out.println("baseDatosMySQL es null, intentando crear nueva instancia...");
-            try {
-                baseDatosMySQL = new MySQLDatabase();
-                System.out.println("Nueva instancia de MySQLDatabase creada");
-            } catch (Exception e) {
-                System.out.println("Error al crear nueva instancia: " + e.getMessage());
-                baseDatosMySQL = null;
+        // crear la instancia y verificar la conexión puede tardar varios reintentos: se hace en segundo plano
+        btnUsarMySQL.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        MySQLDatabase existente = baseDatosMySQL;
+        TareasSegundoPlano.ejecutar(new SwingWorker<MySQLDatabase, Void>() {
+            private boolean conectado = false;
+            
+            @Override
+            protected MySQLDatabase doInBackground() {
+                MySQLDatabase db = existente;
+                // Si baseDatosMySQL es null, intentar crear una nueva instancia
+                if (db == null) {
+                    System.out.println("baseDatosMySQL es null, intentando crear nueva instancia...");
+                    try {
+                        db = new MySQLDatabase();
+                        System.out.println("Nueva instancia de MySQLDatabase creada");
+                    } catch (Exception e) {
+                        System.out.println("Error al crear nueva instancia: " + e.getMessage());
+                        db = null;
+                    }
+                }
+                if (db != null) {
+                    System.out.println("Verificando conexión MySQL...");
+                    conectado = db.isConectado();
+                    System.out.println("MySQL conectado: " + conectado);
+                }
+                return db;
             }
-        }
-        
-        if (baseDatosMySQL != null) {
-            System.out.println("Verificando conexión MySQL...");
-            boolean conectado = baseDatosMySQL.isConectado();
-            System.out.println("MySQL conectado: " + conectado);
-        }
-        
-        if (baseDatosMySQL == null || !baseDatosMySQL.isConectado()) {
+            
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    baseDatosMySQL = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    baseDatosMySQL = null;
+                }
+                completarCambioAMySQL(conectado);
+            }
+        });
+    }
+    
+    private void completarCambioAMySQL(boolean conectado) {
+        if (baseDatosMySQL == null || !conectado) {
+            btnUsarMySQL.setEnabled(true);
             System.out.println("Mostrando mensaje de error MySQL no disponible");
             JOptionPane.showMessageDialog(this, 
                 "MySQL no está disponible.\n" +
@@ -663,6 +711,7 @@ public class SistemaPedidosFarmacia extends JFrame {
         
         System.out.println("Cambiando a modo MySQL exitosamente");
         usarMySQL = true;
+        repositorio = RepositorioConCache.envolver(baseDatosMySQL);
         actualizarInterfazModo();
         JOptionPane.showMessageDialog(this, 
             "Modo cambiado a MySQL.\nLos datos se guardarán en la base de datos MySQL",
@@ -684,11 +733,33 @@ public class SistemaPedidosFarmacia extends JFrame {
         
         // Actualizar el panel de registros
         if (panelRegistros instanceof PanelRegistros) {
-            ((PanelRegistros) panelRegistros).actualizarModo(usarMySQL);
+            ((PanelRegistros) panelRegistros).usarRepositorio(repositorio);
             ((PanelRegistros) panelRegistros).actualizarDatos();
         }
     }
     
+    // lee el catálogo en segundo plano una sola vez, con los nombres del almacenamiento activo
+    private void cargarCatalogo() {
+        if (catalogoSolicitado) {
+            return;
+        }
+        catalogoSolicitado = true;
+        RepositorioMedicamentos repo = repositorio;
+        TareasSegundoPlano.ejecutar(() -> catalogo.cargar(new File(CatalogoMedicamentos.ARCHIVO),
+                repo.obtenerNombresRegistrados()));
+    }
+    
+    // al elegir una sugerencia se selecciona también su tipo (sin distinguir mayúsculas ni tildes)
+    private void aplicarSugerencia(CatalogoMedicamentos.Entrada entrada) {
+        String tipo = IndicePrefijos.normalizar(entrada.getTipo());
+        for (int i = 1; i < cmbTipoMedicamento.getItemCount(); i++) {
+            if (IndicePrefijos.normalizar(cmbTipoMedicamento.getItemAt(i)).equals(tipo)) {
+                cmbTipoMedicamento.setSelectedIndex(i);
+                return;
+            }
+        }
+    }
+    
     // limpiar todos los campos del formulario
     private void borrarFormulario() {
         txtNombreMedicamento.setText("");
@@ -715,20 +786,46 @@ public class SistemaPedidosFarmacia extends JFrame {
         String distribuidor = obtenerDistribuidorSeleccionado();
         List<String> sucursales = obtenerSucursalesSeleccionadas();
         
-        // guardar en la base de datos (MySQL si está disponible, sino XML)
-        if (usarMySQL && baseDatosMySQL != null) {
-            baseDatosMySQL.agregarMedicamento(nombreMedicamento, tipoMedicamento, cantidad, distribuidor, sucursales);
-        } else {
-            baseDatosXML.agregarMedicamento(nombreMedicamento, tipoMedicamento, cantidad, distribuidor, sucursales);
-        }
-        
-        // actualizar la pestaña de registros
-        if (panelRegistros instanceof PanelRegistros) {
-            ((PanelRegistros) panelRegistros).actualizarDatos();
-        }
-        
-        // mostrar ventana de resumen
-        mostrarResumenPedido(nombreMedicamento, tipoMedicamento, cantidad, distribuidor, sucursales);
+        // guardar en la base de datos (MySQL si está disponible, sino XML) fuera del hilo de eventos:
+        // con mysql lento o reconectando la ventana sigue respondiendo
+        RepositorioMedicamentos repo = repositorio;
+        btnConfirmar.setEnabled(false);
+        TareasSegundoPlano.ejecutar(new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return repo.agregarMedicamento(nombreMedicamento, tipoMedicamento, cantidad, distribuidor, sucursales);
+            }
+            
+            @Override
+            protected void done() {
+                btnConfirmar.setEnabled(true);
+                String error;
+                try {
+                    int id = get();
+                    error = id > 0 ? null : "El almacenamiento no aceptó el registro (revise la consola).";
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable causa = e.getCause() != null ? e.getCause() : e;
+                    error = causa.getMessage() != null ? causa.getMessage() : causa.toString();
+                }
+                if (error != null) {
+                    // el pedido no quedó guardado: ni catálogo ni resumen, el formulario conserva los datos
+                    System.err.println("Error al guardar el pedido de " + nombreMedicamento + ": " + error);
+                    JOptionPane.showMessageDialog(SistemaPedidosFarmacia.this,
+                        "No se pudo guardar el pedido.\n" + error,
+                        "Error al guardar", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                catalogo.agregar(nombreMedicamento, tipoMedicamento);
+                
+                // actualizar la pestaña de registros
+                if (panelRegistros instanceof PanelRegistros) {
+                    ((PanelRegistros) panelRegistros).actualizarDatos();
+                }
+                
+                // mostrar ventana de resumen
+                mostrarResumenPedido(nombreMedicamento, tipoMedicamento, cantidad, distribuidor, sucursales);
+            }
+        });
     }
     
     // validar que todos los campos esten correctos
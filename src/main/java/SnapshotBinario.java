@@ -0,0 +1,144 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * formato binario compacto de los medicamentos, pensado para arrancar sin parsear xml
+ *
+ * estructura (big-endian):
+ *   cabecera   magic:int version:int generacion:long bytesXml:long registros:int entradasDiccionario:int
+ *   diccionario por cada cadena: longitud:int + bytes utf-8
+ *   registros  ancho fijo: id:int nombre:int tipo:int cantidad:int distribuidor:int sucursales:int fecha:long
+ * los campos de texto son índices al diccionario; las sucursales se guardan como
+ * una sola entrada con los nombres separados por salto de línea
+ * la generación y el tamaño del xml de origen identifican de qué versión del xml salió el snapshot
+ */
+public final class SnapshotBinario {
+    private static final int MAGIC = 0x4D534E50;   // "MSNP"
+    private static final int VERSION = 3;
+    private static final int BYTES_REGISTRO = 6 * Integer.BYTES + Long.BYTES;
+
+    private SnapshotBinario() { }
+
+    /**
+     * lee el snapshot mapeando el archivo en memoria, si salió del xml indicado
+     * @param archivo snapshot a leer
+     * @param generacion generación del xml actual
+     * @param bytesXml tamaño en bytes del xml actual
+     * @param consumidor receptor de cada registro en el orden original
+     * @return true si se leyó; false si el snapshot es de otra versión del xml (no se entrega ningún registro)
+     * @throws IOException si el archivo no existe o no tiene un formato válido
+     */
+    public static boolean leer(File archivo, long generacion, long bytesXml,
+                               Consumer<Medicamento> consumidor) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("formato de snapshot no reconocido");
+            }
+            if (buffer.getLong() != generacion || buffer.getLong() != bytesXml) {
+                return false;
+            }
+            int totalRegistros = buffer.getInt();
+            int totalDiccionario = buffer.getInt();
+
+            String[] diccionario = new String[totalDiccionario];
+            for (int i = 0; i < totalDiccionario; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                diccionario[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            // las listas de sucursales se comparten entre registros con la misma combinación
+            Map<Integer, List<String>> listasSucursales = new HashMap<>();
+            for (int i = 0; i < totalRegistros; i++) {
+                int id = buffer.getInt();
+                String nombre = diccionario[buffer.getInt()];
+                String tipo = diccionario[buffer.getInt()];
+                int cantidad = buffer.getInt();
+                String distribuidor = diccionario[buffer.getInt()];
+                List<String> sucursales = listasSucursales.computeIfAbsent(buffer.getInt(),
+                        indice -> separarSucursales(diccionario[indice]));
+                long fecha = buffer.getLong() * 1000;   // segundos de FechaRegistro; no hace falta formatear
+
+                consumidor.accept(new Medicamento(id, nombre, tipo, cantidad, distribuidor, sucursales, fecha));
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // índices fuera de rango o buffer agotado: snapshot corrupto
+            throw new IOException("snapshot corrupto: " + e, e);
+        }
+    }
+
+    /**
+     * escribe el snapshot en un temporal y lo renombra sobre el destino
+     * @param destino archivo de snapshot
+     * @param generacion generación del xml que representa
+     * @param bytesXml tamaño en bytes de ese xml
+     * @param medicamentos registros a guardar
+     */
+    public static void escribir(File destino, long generacion, long bytesXml,
+                                Collection<Medicamento> medicamentos) throws IOException {
+        Map<String, Integer> indices = new HashMap<>();
+        List<String> diccionario = new ArrayList<>();
+        ByteBuffer registros = ByteBuffer.allocate(medicamentos.size() * BYTES_REGISTRO);
+
+        for (Medicamento med : medicamentos) {
+            registros.putInt(med.getId());
+            registros.putInt(indice(med.getNombre(), indices, diccionario));
+            registros.putInt(indice(med.getTipo(), indices, diccionario));
+            registros.putInt(med.getCantidad());
+            registros.putInt(indice(med.getDistribuidor(), indices, diccionario));
+            registros.putInt(indice(String.join("\n", med.getSucursales()), indices, diccionario));
+            registros.putLong(Math.floorDiv(med.getFechaMillis(), 1000L));
+        }
+
+        File temporal = new File(destino.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temporal)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generacion);
+            out.writeLong(bytesXml);
+            out.writeInt(medicamentos.size());
+            out.writeInt(diccionario.size());
+            for (String valor : diccionario) {
+                byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.write(registros.array(), 0, registros.position());
+            out.flush();
+            fos.getChannel().force(true);
+        }
+        try {
+            Files.move(temporal.toPath(), destino.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static int indice(String valor, Map<String, Integer> indices, List<String> diccionario) {
+        Integer indice = indices.get(valor);
+        if (indice == null) {
+            indice = diccionario.size();
+            indices.put(valor, indice);
+            diccionario.add(valor);
+        }
+        return indice;
+    }
+
+    private static List<String> separarSucursales(String valor) {
+        if (valor.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Sucursales.canonica(Arrays.asList(valor.split("\n")));
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.*;
+
+/**
+ * registro de las sucursales conocidas y su representación como máscara de bits
+ * cada sucursal ocupa un bit (Principal = 1, Secundaria = 2), así un conjunto de sucursales
+ * cabe en un entero y "disponible en la sucursal X" es un and de bits; en mysql la máscara
+ * vive en la columna indexada sucursales_mask (TINYINT UNSIGNED: hasta 8 sucursales, una novena
+ * obliga a ampliar la columna). un nombre que no está en la lista no tiene bit, por eso mysql
+ * rechaza las altas con sucursales desconocidas en lugar de guardarlas con máscara 0
+ */
+public final class Sucursales {
+    public static final String TODAS = "Todas las sucursales";   // opción de filtro sin restricción
+
+    public static final int PRINCIPAL = 1;
+    public static final int SECUNDARIA = 1 << 1;
+
+    // el índice de cada nombre es la posición de su bit
+    private static final List<String> NOMBRES = Collections.unmodifiableList(Arrays.asList("Principal", "Secundaria"));
+    private static final int MAX_SUCURSALES = 8;   // bits de sucursales_mask
+
+    // una lista inmutable compartida por cada combinación de sucursales conocidas, indexada por máscara
+    private static final List<List<String>> LISTAS_POR_MASCARA = new ArrayList<>();
+    // texto "A, B" de mysql -> lista compartida; solo guarda textos de sucursales conocidas
+    private static final Map<String, List<String>> LISTAS_POR_TEXTO = new java.util.concurrent.ConcurrentHashMap<>();
+
+    static {
+        if (NOMBRES.size() > MAX_SUCURSALES) {
+            throw new IllegalStateException("sucursales_mask admite hasta " + MAX_SUCURSALES + " sucursales");
+        }
+        for (int mascara = 0; mascara < 1 << NOMBRES.size(); mascara++) {
+            List<String> nombres = new ArrayList<>();
+            for (int i = 0; i < NOMBRES.size(); i++) {
+                if ((mascara & (1 << i)) != 0) {
+                    nombres.add(NOMBRES.get(i));
+                }
+            }
+            LISTAS_POR_MASCARA.add(Collections.unmodifiableList(nombres));
+        }
+    }
+
+    private Sucursales() { }
+
+    /**
+     * nombres de las sucursales en el orden de sus bits
+     */
+    public static List<String> todas() {
+        return NOMBRES;
+    }
+
+    /**
+     * bit de la sucursal (sin distinguir mayúsculas ni espacios alrededor), 0 si no se conoce
+     */
+    public static int bit(String nombre) {
+        if (nombre == null) {
+            return 0;
+        }
+        String buscado = nombre.trim();
+        for (int i = 0; i < NOMBRES.size(); i++) {
+            if (NOMBRES.get(i).equalsIgnoreCase(buscado)) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * true si todos los nombres de la lista son sucursales conocidas (tienen bit)
+     */
+    public static boolean sonConocidas(Collection<String> sucursales) {
+        for (String sucursal : sucursales) {
+            if (bit(sucursal) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * máscara con los bits de todas las sucursales conocidas de la lista
+     */
+    public static int mascara(Collection<String> sucursales) {
+        int mascara = 0;
+        if (sucursales instanceof RandomAccess) {
+            // por posición: se llama una vez por registro cargado y así no crea iteradores
+            List<String> lista = (List<String>) sucursales;
+            for (int i = 0; i < lista.size(); i++) {
+                mascara |= bit(lista.get(i));
+            }
+        } else if (sucursales != null) {
+            for (String sucursal : sucursales) {
+                mascara |= bit(sucursal);
+            }
+        }
+        return mascara;
+    }
+
+    /**
+     * lista compartida con los nombres de los bits de la máscara, en orden de bits
+     */
+    public static List<String> lista(int mascara) {
+        return LISTAS_POR_MASCARA.get(mascara & ((1 << NOMBRES.size()) - 1));
+    }
+
+    /**
+     * lista inmutable igual a la dada: si coincide exactamente (nombres y orden) con la de su
+     * máscara se devuelve esa instancia compartida, si no una copia;
+     * así un millón de registros con las mismas sucursales comparten una sola lista
+     */
+    public static List<String> canonica(List<String> sucursales) {
+        if (sucursales == null || sucursales.isEmpty()) {
+            return LISTAS_POR_MASCARA.get(0);
+        }
+        List<String> compartida = LISTAS_POR_MASCARA.get(mascara(sucursales));
+        if (compartida.size() == sucursales.size()) {
+            int i = 0;
+            while (i < compartida.size() && compartida.get(i).equals(sucursales.get(i))) {
+                i++;
+            }
+            if (i == compartida.size()) {
+                return compartida;
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(sucursales));
+    }
+
+    /**
+     * lista compartida para el texto separado por ", " con que mysql guarda las sucursales
+     */
+    public static List<String> desdeTexto(String texto) {
+        if (texto == null || texto.isEmpty()) {
+            return LISTAS_POR_MASCARA.get(0);
+        }
+        List<String> lista = LISTAS_POR_TEXTO.get(texto);
+        if (lista == null) {
+            lista = canonica(Arrays.asList(texto.split(", ")));
+            if (lista == LISTAS_POR_MASCARA.get(mascara(lista))) {
+                LISTAS_POR_TEXTO.put(texto, lista);
+            }
+        }
+        return lista;
+    }
+
+    /**
+     * todas las máscaras posibles que comparten al menos un bit con la indicada;
+     * sirve para resolver "tiene la sucursal X" con un IN sobre un índice en lugar de un and por fila
+     */
+    public static List<Integer> mascarasQueIncluyen(int bits) {
+        List<Integer> mascaras = new ArrayList<>();
+        for (int mascara = 1; mascara < 1 << NOMBRES.size(); mascara++) {
+            if ((mascara & bits) != 0) {
+                mascaras.add(mascara);
+            }
+        }
+        return mascaras;
+    }
+}
@@ -0,0 +1,28 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ejecutor compartido para el acceso a persistencia fuera del hilo de eventos de swing
+ * los SwingWorker de la interfaz se envían aquí en lugar de usar execute(): así una consulta
+ * lenta o una reconexión a mysql no congela la ventana y los hilos llevan un nombre reconocible
+ */
+public final class TareasSegundoPlano {
+    private static final int HILOS = 2;     // uno puede quedar ocupado con una carga larga
+    private static final AtomicInteger CONTADOR = new AtomicInteger();
+
+    private static final ExecutorService EJECUTOR = Executors.newFixedThreadPool(HILOS, r -> {
+        Thread hilo = new Thread(r, "persistencia-" + CONTADOR.incrementAndGet());
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    private TareasSegundoPlano() { }
+
+    /**
+     * encola la tarea (típicamente un SwingWorker) en el ejecutor de persistencia
+     */
+    public static void ejecutar(Runnable tarea) {
+        EJECUTOR.execute(tarea);
+    }
+}
@@ -0,0 +1,143 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * filtros y agregados del almacén columnar contra un recorrido directo de la lista de medicamentos
+ */
+class AlmacenColumnarTest {
+    private static final String[] NOMBRES = {"Ibuprofeno", "Paracetamol", "Omeprazol", "Loratadina", "Amoxicilina"};
+    // mismas palabras con otras mayúsculas: filtros y agrupaciones no las distinguen
+    private static final String[] TIPOS = {"Analgésico", "ANALGÉSICO", "Antiácido", "antiácido", "Antibiótico"};
+    private static final long FECHA_BASE = 1_600_000_000_000L;
+
+    @Test
+    void filtrosYAgregadosCoincidenConRecorridoDirecto() {
+        Random azar = new Random(24);
+        List<Medicamento> medicamentos = new ArrayList<>();
+        // más de 256 distribuidores distintos: la columna de códigos pasa de byte a char a mitad de la carga
+        for (int id = 1; id <= 30_000; id++) {
+            medicamentos.add(aleatorio(azar, id, 400));
+        }
+        AlmacenColumnar almacen = new AlmacenColumnar();
+        medicamentos.forEach(almacen::agregar);
+
+        assertEquals(medicamentos.size(), almacen.tamano());
+        for (int fila = 0; fila < medicamentos.size(); fila += 7) {
+            assertMismaFila(medicamentos.get(fila), almacen.obtener(fila));
+        }
+        assertEquals(medicamentos.stream().mapToLong(Medicamento::getCantidad).sum(), almacen.totalUnidades());
+
+        for (int prueba = 0; prueba < 200; prueba++) {
+            AlmacenColumnar.Filtro filtro = new AlmacenColumnar.Filtro();
+            Predicate<Medicamento> condicion = med -> true;
+            if (azar.nextBoolean()) {
+                String tipo = TIPOS[azar.nextInt(TIPOS.length)];
+                filtro.tipo(tipo);
+                condicion = condicion.and(med -> med.getTipo().equalsIgnoreCase(tipo));
+            }
+            if (azar.nextInt(3) == 0) {
+                String distribuidor = "Distribuidor " + azar.nextInt(400);
+                filtro.distribuidor(distribuidor);
+                condicion = condicion.and(med -> med.getDistribuidor().equalsIgnoreCase(distribuidor));
+            }
+            if (azar.nextBoolean()) {
+                int bit = Sucursales.bit(Sucursales.todas().get(azar.nextInt(Sucursales.todas().size())));
+                filtro.sucursales(bit);
+                condicion = condicion.and(med -> (med.getMascaraSucursales() & bit) != 0);
+            }
+            if (azar.nextBoolean()) {
+                long desde = FECHA_BASE + azar.nextInt(1_000_000) * 1000L;
+                long hasta = desde + azar.nextInt(500_000) * 1000L;
+                filtro.desde(desde).hasta(hasta);
+                condicion = condicion.and(med -> med.getFechaMillis() >= desde && med.getFechaMillis() <= hasta);
+            }
+            if (azar.nextBoolean()) {
+                int minima = azar.nextInt(1000);
+                int maxima = minima + azar.nextInt(500);
+                filtro.cantidadEntre(minima, maxima);
+                condicion = condicion.and(med -> med.getCantidad() >= minima && med.getCantidad() <= maxima);
+            }
+
+            AlmacenColumnar.Seleccion seleccion = almacen.filtrar(filtro);
+            List<Integer> esperadas = new ArrayList<>();
+            for (int fila = 0; fila < medicamentos.size(); fila++) {
+                if (condicion.test(medicamentos.get(fila))) {
+                    esperadas.add(fila);
+                }
+            }
+            assertEquals(esperadas.size(), seleccion.tamano());
+            List<Medicamento> elegidos = new ArrayList<>();
+            for (int i = 0; i < seleccion.tamano(); i++) {
+                assertEquals((int) esperadas.get(i), seleccion.fila(i));
+                elegidos.add(medicamentos.get(seleccion.fila(i)));
+            }
+
+            assertEquals(elegidos.stream().mapToLong(Medicamento::getCantidad).sum(), almacen.totalUnidades(seleccion));
+            assertEquals(agrupar(elegidos, Medicamento::getTipo), almacen.unidadesPorTipo(seleccion));
+            assertEquals(agrupar(elegidos, Medicamento::getDistribuidor), almacen.unidadesPorDistribuidor(seleccion));
+            assertEquals(porSucursal(elegidos), almacen.unidadesPorSucursal(seleccion));
+        }
+    }
+
+    @Test
+    void todasSeleccionaCadaFilaEnOrden() {
+        Random azar = new Random(3);
+        AlmacenColumnar almacen = new AlmacenColumnar();
+        for (int id = 1; id <= 2000; id++) {
+            almacen.agregar(aleatorio(azar, id, 10));
+        }
+        AlmacenColumnar.Seleccion todas = almacen.todas();
+        assertEquals(2000, todas.tamano());
+        for (int i = 0; i < todas.tamano(); i++) {
+            assertEquals(i, todas.fila(i));
+        }
+        assertEquals(almacen.totalUnidades(), almacen.totalUnidades(todas));
+    }
+
+    // cada columna del almacén vuelve con el valor que se agregó (el tipo y el distribuidor con su
+    // escritura original, aunque se agrupen sin distinguir mayúsculas)
+    private static void assertMismaFila(Medicamento esperado, Medicamento real) {
+        assertEquals(esperado.getId(), real.getId());
+        assertEquals(esperado.getNombre(), real.getNombre());
+        assertEquals(esperado.getTipo(), real.getTipo());
+        assertEquals(esperado.getCantidad(), real.getCantidad());
+        assertEquals(esperado.getDistribuidor(), real.getDistribuidor());
+        assertEquals(esperado.getMascaraSucursales(), real.getMascaraSucursales());
+        assertEquals(esperado.getFechaMillis(), real.getFechaMillis());
+    }
+
+    private static Medicamento aleatorio(Random azar, int id, int distribuidores) {
+        return new Medicamento(id, NOMBRES[azar.nextInt(NOMBRES.length)], TIPOS[azar.nextInt(TIPOS.length)],
+                azar.nextInt(1500), "Distribuidor " + azar.nextInt(distribuidores),
+                Sucursales.lista(1 + azar.nextInt(3)), FECHA_BASE + azar.nextInt(1_500_000) * 1000L);
+    }
+
+    // unidades por valor sin distinguir mayúsculas, como los agregados del almacén
+    private static Map<String, Long> agrupar(List<Medicamento> medicamentos,
+                                             Function<Medicamento, String> campo) {
+        Map<String, Long> resultado = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Medicamento med : medicamentos) {
+            resultado.merge(campo.apply(med), (long) med.getCantidad(), Long::sum);
+        }
+        return resultado;
+    }
+
+    private static Map<String, Long> porSucursal(List<Medicamento> medicamentos) {
+        Map<String, Long> resultado = new LinkedHashMap<>();
+        for (String sucursal : Sucursales.todas()) {
+            long unidades = 0;
+            for (Medicamento med : medicamentos) {
+                if (med.getSucursales().contains(sucursal)) {
+                    unidades += med.getCantidad();
+                }
+            }
+            resultado.put(sucursal, unidades);
+        }
+        return resultado;
+    }
+}
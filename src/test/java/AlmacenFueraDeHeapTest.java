@@ -0,0 +1,167 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * el almacén fuera del heap debe comportarse como una ArrayList para las operaciones que usa
+ * ModeloTablaMedicamentos: altas al inicio y al final, bajas en cualquier posición y vaciado
+ */
+class AlmacenFueraDeHeapTest {
+    private static final String[] NOMBRES = {"Ibuprofeno", "Paracetamol", "Omeprazol", "Loratadina", "Amoxicilina"};
+    private static final String[] TIPOS = {"Analgésico", "Antiácido", "Antihistamínico", "Antibiótico"};
+    private static final String[] DISTRIBUIDORES = {"Cofarma", "Empsephar", "Cemefar"};
+
+    @Test
+    void secuenciaAleatoriaCoincideConArrayList() {
+        Random azar = new Random(25);
+        AlmacenFueraDeHeap almacen = new AlmacenFueraDeHeap();
+        List<Medicamento> esperado = new ArrayList<>();
+        int siguienteId = 1;
+
+        // más de un segmento por pila (32768 huecos) para cubrir los cruces de segmento
+        for (int paso = 0; paso < 120_000; paso++) {
+            int operacion = azar.nextInt(100);
+            if (operacion < 45) {
+                Medicamento med = aleatorio(azar, siguienteId++);
+                almacen.add(med);
+                esperado.add(med);
+            } else if (operacion < 85) {
+                Medicamento med = aleatorio(azar, siguienteId++);
+                almacen.add(0, med);
+                esperado.add(0, med);
+            } else if (operacion < 97) {
+                List<Medicamento> tanda = new ArrayList<>();
+                for (int i = azar.nextInt(20); i > 0; i--) {
+                    tanda.add(aleatorio(azar, siguienteId++));
+                }
+                almacen.addAll(0, tanda);
+                esperado.addAll(0, tanda);
+            } else if (!esperado.isEmpty() && operacion < 100) {
+                int fila = azar.nextInt(esperado.size());
+                assertIguales(esperado.remove(fila), almacen.remove(fila));
+            }
+            if (paso == 60_000) {
+                almacen.clear();
+                esperado.clear();
+            }
+            if (!esperado.isEmpty() && paso % 97 == 0) {
+                int fila = azar.nextInt(esperado.size());
+                assertIguales(esperado.get(fila), almacen.get(fila));
+                assertEquals(esperado.get(fila).getId(), almacen.getId(fila));
+            }
+        }
+
+        assertEquals(esperado.size(), almacen.size());
+        for (int fila = 0; fila < esperado.size(); fila++) {
+            assertIguales(esperado.get(fila), almacen.get(fila));
+            assertEquals(esperado.get(fila).getId(), almacen.getId(fila));
+        }
+    }
+
+    @Test
+    void quitarFilasEnTandaCoincideConArrayList() {
+        Random azar = new Random(17);
+        AlmacenFueraDeHeap almacen = new AlmacenFueraDeHeap();
+        List<Medicamento> esperado = new ArrayList<>();
+        // filas en las dos pilas y más de un segmento en cada una
+        for (int id = 1; id <= 80_000; id++) {
+            Medicamento med = aleatorio(azar, id);
+            if (azar.nextBoolean()) {
+                almacen.add(med);
+                esperado.add(med);
+            } else {
+                almacen.add(0, med);
+                esperado.add(0, med);
+            }
+        }
+
+        for (int tanda = 0; tanda < 5; tanda++) {
+            BitSet quitadas = new BitSet();
+            for (int fila = 0; fila < esperado.size(); fila++) {
+                if (azar.nextInt(3) == 0) {
+                    quitadas.set(fila);
+                }
+            }
+            almacen.quitarFilas(quitadas);
+            for (int fila = esperado.size() - 1; fila >= 0; fila--) {
+                if (quitadas.get(fila)) {
+                    esperado.remove(fila);
+                }
+            }
+
+            assertEquals(esperado.size(), almacen.size());
+            for (int fila = 0; fila < esperado.size(); fila++) {
+                assertEquals(esperado.get(fila).getId(), almacen.getId(fila));
+            }
+        }
+        assertIguales(esperado.get(esperado.size() / 2), almacen.get(esperado.size() / 2));
+        // los segmentos sobrantes se sueltan al achicarse las pilas
+        assertTrue(almacen.bytesFueraDeHeap() < 80_000L * AlmacenFueraDeHeap.BYTES_HUECO);
+    }
+
+    @Test
+    void setReescribeLaFilaEnAmbasPilas() {
+        Random azar = new Random(3);
+        AlmacenFueraDeHeap almacen = new AlmacenFueraDeHeap();
+        List<Medicamento> esperado = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) {
+            Medicamento med = aleatorio(azar, id);
+            if (id % 2 == 0) {
+                almacen.add(0, med);
+                esperado.add(0, med);
+            } else {
+                almacen.add(med);
+                esperado.add(med);
+            }
+        }
+        for (int fila = 0; fila < esperado.size(); fila += 7) {
+            Medicamento nuevo = esperado.get(fila).conCantidad(azar.nextInt(1000));
+            assertIguales(esperado.set(fila, nuevo), almacen.set(fila, nuevo));
+        }
+        for (int fila = 0; fila < esperado.size(); fila++) {
+            assertIguales(esperado.get(fila), almacen.get(fila));
+        }
+    }
+
+    @Test
+    void rechazaAltasEnMedio() {
+        AlmacenFueraDeHeap almacen = new AlmacenFueraDeHeap();
+        Random azar = new Random(1);
+        almacen.add(aleatorio(azar, 1));
+        almacen.add(aleatorio(azar, 2));
+        assertThrows(UnsupportedOperationException.class, () -> almacen.add(1, aleatorio(azar, 3)));
+        assertThrows(IndexOutOfBoundsException.class, () -> almacen.get(2));
+    }
+
+    @Test
+    void vaciarDevuelveLaMemoriaDirecta() {
+        AlmacenFueraDeHeap almacen = new AlmacenFueraDeHeap();
+        Random azar = new Random(2);
+        for (int id = 1; id <= 40_000; id++) {
+            almacen.add(aleatorio(azar, id));
+        }
+        assertTrue(almacen.bytesFueraDeHeap() >= 40_000L * AlmacenFueraDeHeap.BYTES_HUECO);
+        almacen.clear();
+        assertEquals(0, almacen.bytesFueraDeHeap());
+        assertTrue(almacen.isEmpty());
+    }
+
+    private static Medicamento aleatorio(Random azar, int id) {
+        List<String> sucursales = Sucursales.lista(1 + azar.nextInt(3));
+        return new Medicamento(id, NOMBRES[azar.nextInt(NOMBRES.length)], TIPOS[azar.nextInt(TIPOS.length)],
+                azar.nextInt(1000), DISTRIBUIDORES[azar.nextInt(DISTRIBUIDORES.length)], sucursales,
+                1_600_000_000_000L + azar.nextInt(1_000_000_000) * 1000L);
+    }
+
+    private static void assertIguales(Medicamento esperado, Medicamento real) {
+        assertEquals(esperado.getId(), real.getId());
+        assertEquals(esperado.getNombre(), real.getNombre());
+        assertEquals(esperado.getTipo(), real.getTipo());
+        assertEquals(esperado.getCantidad(), real.getCantidad());
+        assertEquals(esperado.getDistribuidor(), real.getDistribuidor());
+        assertEquals(esperado.getSucursales(), real.getSucursales());
+        assertEquals(esperado.getFechaMillis(), real.getFechaMillis());
+    }
+}
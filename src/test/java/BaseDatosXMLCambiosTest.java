@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * cambios desde un cursor en el almacenamiento xml: altas, bajas y modificaciones posteriores,
+ * sin informar registros que el lector nunca vio
+ * (surefire corre en target/pruebas, así que los archivos no pisan los del proyecto)
+ */
+class BaseDatosXMLCambiosTest {
+    private static final String[] ARCHIVOS = {"medicamentos.xml", "medicamentos.xml.tmp", "medicamentos.journal", "medicamentos.snap"};
+
+    private BaseDatosXML base;
+
+    @BeforeEach
+    void abrir() {
+        borrarArchivos();
+        Properties propiedades = new Properties();
+        propiedades.setProperty("xml.snapshot", "false");
+        base = new BaseDatosXML(propiedades);
+    }
+
+    @AfterEach
+    void cerrar() {
+        base.close();
+        borrarArchivos();
+    }
+
+    @Test
+    void informaAltasBajasYModificacionesPosterioresAlCursor() {
+        int vista = agregar("Vista", 10);
+        int modificada = agregar("Modificada", 10);
+        CursorCambios cursor = base.obtenerCursorCambios();
+
+        int nueva = agregar("Nueva", 1);
+        base.eliminarMedicamentoPorId(vista);
+        base.actualizarCantidad(modificada, 7);
+        base.actualizarCantidad(nueva, 3);
+        int fugaz = agregar("Fugaz", 1);
+        base.eliminarMedicamentoPorId(fugaz);
+
+        CambiosRegistro cambios = base.obtenerCambiosDesde(cursor);
+        assertFalse(cambios.isRecargar());
+        assertEquals(1, cambios.getAltas().size());
+        assertEquals(nueva, cambios.getAltas().get(0).getId());
+        assertEquals(3, cambios.getAltas().get(0).getCantidad());   // el alta llega con su versión actual
+        assertEquals(Collections.singletonList(vista), cambios.getBajas());
+        assertEquals(1, cambios.getModificaciones().size());
+        assertEquals(modificada, cambios.getModificaciones().get(0).getId());
+        assertEquals(7, cambios.getModificaciones().get(0).getCantidad());
+        assertEquals(2, cambios.getCursor().getTotal());
+
+        assertTrue(base.obtenerCambiosDesde(cambios.getCursor()).estaVacio());
+    }
+
+    @Test
+    void unRegistroModificadoYEliminadoSoloLlegaComoBaja() {
+        int id = agregar("Pasajero", 5);
+        CursorCambios cursor = base.obtenerCursorCambios();
+
+        base.actualizarCantidad(id, 6);
+        base.actualizarCantidad(id, 8);
+        base.eliminarMedicamentoPorId(id);
+
+        CambiosRegistro cambios = base.obtenerCambiosDesde(cursor);
+        assertEquals(Collections.singletonList(id), cambios.getBajas());
+        assertTrue(cambios.getModificaciones().isEmpty());
+        assertEquals(0, cambios.getCursor().getTotal());
+    }
+
+    @Test
+    void variasModificacionesDelMismoRegistroLleganUnaVez() {
+        int id = agregar("Repetido", 5);
+        CursorCambios cursor = base.obtenerCursorCambios();
+
+        base.actualizarCantidad(id, 6);
+        base.actualizarCantidad(id, 9);
+
+        List<Medicamento> modificaciones = base.obtenerCambiosDesde(cursor).getModificaciones();
+        assertEquals(1, modificaciones.size());
+        assertEquals(9, modificaciones.get(0).getCantidad());
+    }
+
+    @Test
+    void unCursorAjenoPideRecargaCompleta() {
+        agregar("Uno", 1);
+        CursorCambios actual = base.obtenerCursorCambios();
+        CursorCambios ajeno = new CursorCambios(actual.getUltimaAlta(), actual.getUltimoCambio() + 5);
+
+        assertTrue(base.obtenerCambiosDesde(ajeno).isRecargar());
+        assertTrue(base.obtenerCambiosDesde(null).isRecargar());
+    }
+
+    private int agregar(String nombre, int cantidad) {
+        return base.agregarMedicamento(nombre, "Analgésico", cantidad, "Cofarma", Collections.singletonList("Principal"));
+    }
+
+    private static void borrarArchivos() {
+        for (String archivo : ARCHIVOS) {
+            new File(archivo).delete();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * arranque desde el snapshot binario: solo se usa si salió del xml actual, aunque las fechas
+ * de modificación de los dos archivos no permitan distinguirlos
+ * (surefire corre en target/pruebas, así que los archivos no pisan los del proyecto)
+ */
+class BaseDatosXMLSnapshotTest {
+    private static final String[] ARCHIVOS = {"medicamentos.xml", "medicamentos.xml.tmp", "medicamentos.journal",
+            "medicamentos.snap", "medicamentos.snap.tmp"};
+
+    @BeforeEach
+    void limpiar() {
+        borrarArchivos();
+    }
+
+    @AfterEach
+    void borrar() {
+        borrarArchivos();
+    }
+
+    @Test
+    void reabreDesdeElSnapshotConLosMismosRegistros() {
+        try (BaseDatosXML base = abrir(true)) {
+            agregar(base, "Acetaminofén");
+            agregar(base, "Ibuprofeno");
+        }
+        assertTrue(new File("medicamentos.snap").exists());
+
+        try (BaseDatosXML base = abrir(true)) {
+            assertEquals(Arrays.asList("Acetaminofén", "Ibuprofeno"), nombres(base));
+        }
+    }
+
+    @Test
+    void noUsaUnSnapshotViejoAunqueElXmlTengaSuMismaFecha() {
+        try (BaseDatosXML base = abrir(true)) {
+            agregar(base, "Acetaminofén");
+        }
+        // otra instancia sin snapshot reescribe el xml y deja el snapshot atrás
+        try (BaseDatosXML base = abrir(false)) {
+            agregar(base, "Ibuprofeno");
+        }
+        File snapshot = new File("medicamentos.snap");
+        assertTrue(new File("medicamentos.xml").setLastModified(snapshot.lastModified()));
+
+        try (BaseDatosXML base = abrir(true)) {
+            assertEquals(Arrays.asList("Acetaminofén", "Ibuprofeno"), nombres(base));
+        }
+    }
+
+    private static BaseDatosXML abrir(boolean snapshot) {
+        Properties propiedades = new Properties();
+        propiedades.setProperty("xml.snapshot", String.valueOf(snapshot));
+        return new BaseDatosXML(propiedades);
+    }
+
+    private static void agregar(BaseDatosXML base, String nombre) {
+        base.agregarMedicamento(nombre, "Analgésico", 10, "Cofarma", Collections.singletonList("Principal"));
+    }
+
+    private static List<String> nombres(BaseDatosXML base) {
+        List<String> nombres = new ArrayList<>();
+        for (Medicamento med : base.obtenerTodosLosMedicamentos()) {
+            nombres.add(med.getNombre());
+        }
+        Collections.sort(nombres);
+        return nombres;
+    }
+
+    private static void borrarArchivos() {
+        for (String archivo : ARCHIVOS) {
+            new File(archivo).delete();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * group commit: las solicitudes de una ventana se resuelven con un volcado y vaciar no
+ * retorna hasta que lo pendiente (o el volcado ya en curso) esté escrito
+ */
+class EscrituraAgrupadaTest {
+
+    @Test
+    void sinVentanaVuelcaEnCadaSolicitudYPropagaElError() throws Exception {
+        AtomicInteger volcados = new AtomicInteger();
+        try (EscrituraAgrupada escritura = new EscrituraAgrupada("prueba", 0, volcados::incrementAndGet)) {
+            escritura.solicitar();
+            escritura.solicitar();
+            assertEquals(2, volcados.get());
+        }
+
+        EscrituraAgrupada fallida = new EscrituraAgrupada("prueba", 0, () -> {
+            throw new IOException("disco lleno");
+        });
+        assertThrows(IOException.class, fallida::solicitar);
+    }
+
+    @Test
+    void lasSolicitudesDeUnaVentanaSeVuelcanUnaVez() throws Exception {
+        AtomicInteger volcados = new AtomicInteger();
+        try (EscrituraAgrupada escritura = new EscrituraAgrupada("prueba", 60_000, volcados::incrementAndGet)) {
+            for (int i = 0; i < 50; i++) {
+                escritura.solicitar();
+            }
+            assertEquals(0, volcados.get());
+
+            escritura.vaciar();   // adelanta el volcado programado en lugar de esperar la ventana
+            assertEquals(1, volcados.get());
+            escritura.vaciar();   // nada pendiente: no vuelve a escribir
+            assertEquals(1, volcados.get());
+
+            escritura.solicitar();
+        }
+        assertEquals(2, volcados.get());   // close vuelca lo pendiente
+    }
+
+    @Test
+    void vaciarEsperaAlVolcadoQueYaEstaEnCurso() throws Exception {
+        CountDownLatch empezado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicInteger volcados = new AtomicInteger();
+        EscrituraAgrupada escritura = new EscrituraAgrupada("prueba", 1, () -> {
+            empezado.countDown();
+            liberar.await();
+            volcados.incrementAndGet();
+        });
+        ExecutorService hilo = Executors.newSingleThreadExecutor();
+        try {
+            escritura.solicitar();
+            assertTrue(empezado.await(5, TimeUnit.SECONDS));
+
+            // el volcado programado ya quitó su marca de pendiente: vaciar igual tiene que esperarlo
+            Future<?> vaciado = hilo.submit(() -> {
+                escritura.vaciar();
+                return null;
+            });
+            assertThrows(TimeoutException.class, () -> vaciado.get(200, TimeUnit.MILLISECONDS));
+
+            liberar.countDown();
+            vaciado.get(5, TimeUnit.SECONDS);
+            assertEquals(1, volcados.get());
+        } finally {
+            liberar.countDown();
+            hilo.shutdownNow();
+            escritura.close();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * un registro con la fecha dañada o ausente no debe cortar la lectura del archivo
+ */
+class FlujoXMLTest {
+
+    @Test
+    void fechasInvalidasOAusentesQuedanSinFecha() throws Exception {
+        File archivo = File.createTempFile("medicamentos", ".xml");
+        try {
+            Files.write(archivo.toPath(), ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<medicamentos generacion=\"0\">\n"
+                    + "  <medicamento id=\"1\" nombre=\"Bueno\" tipo=\"Analgésico\" cantidad=\"5\" distribuidor=\"Cofarma\" fecha=\"2025-03-01 10:00:00\">\n"
+                    + "    <sucursal>Principal</sucursal>\n"
+                    + "  </medicamento>\n"
+                    + "  <medicamento id=\"2\" nombre=\"Sin fecha\" tipo=\"Analgésico\" cantidad=\"5\" distribuidor=\"Cofarma\">\n"
+                    + "    <sucursal>Principal</sucursal>\n"
+                    + "  </medicamento>\n"
+                    + "  <medicamento id=\"3\" nombre=\"Dañada\" tipo=\"Analgésico\" cantidad=\"5\" distribuidor=\"Cofarma\" fecha=\"2025-02-30 99:00\">\n"
+                    + "    <sucursal>Principal</sucursal>\n"
+                    + "  </medicamento>\n"
+                    + "</medicamentos>\n").getBytes(StandardCharsets.UTF_8));
+
+            List<Medicamento> leidos = new ArrayList<>();
+            assertEquals(3, FlujoXML.leer(archivo, leidos::add));
+
+            assertEquals(FechaRegistro.aMillis("2025-03-01 10:00:00"), leidos.get(0).getFechaMillis());
+            assertEquals(FechaRegistro.SIN_FECHA, leidos.get(1).getFechaMillis());
+            assertEquals(FechaRegistro.SIN_FECHA, leidos.get(2).getFechaMillis());
+            assertEquals("1970-01-01 00:00:00", leidos.get(2).getFecha());
+        } finally {
+            archivo.delete();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * búsqueda por subcadena del índice de trigramas frente a un contains sobre todos los nombres
+ */
+class IndiceTrigramasTest {
+    private static final String[] NOMBRES = {"Vitamina B12", "Vitamina C", "Acetaminofén", "ACETAMINOFEN",
+            "Ibuprofeno", "Ácido fólico", "Loratadina"};
+
+    @Test
+    void encuentraLoMismoQueUnContainsSinTildesNiMayusculas() {
+        IndiceTrigramas indice = new IndiceTrigramas();
+        List<Medicamento> registros = registros(NOMBRES);
+        registros.forEach(indice::agregar);
+
+        for (String patron : new String[]{"vitamina b", "a", "B1", "acetaminofen", "ÁCIDO FÓL", "ina", "xyz", "no b"}) {
+            assertEquals(porContains(registros, patron), indice.buscar(patron), patron);
+        }
+    }
+
+    @Test
+    void olvidaLosNombresEliminados() {
+        IndiceTrigramas indice = new IndiceTrigramas();
+        List<Medicamento> registros = registros("Ibuprofeno", "Ibuprofeno", "IBUPROFENO");
+        registros.forEach(indice::agregar);
+
+        indice.eliminar(registros.get(0));
+        assertEquals(new HashSet<>(registros.subList(1, 3)), indice.buscar("profen"));
+
+        indice.eliminar(registros.get(1));
+        indice.eliminar(registros.get(2));
+        assertTrue(indice.buscar("profen").isEmpty());
+        assertTrue(indice.buscar("ib").isEmpty());
+    }
+
+    private static List<Medicamento> registros(String... nombres) {
+        List<Medicamento> registros = new ArrayList<>();
+        for (int i = 0; i < nombres.length; i++) {
+            registros.add(new Medicamento(i + 1, nombres[i], "Vitaminas", 1, "Cofarma",
+                    Collections.singletonList("Principal"), 0L));
+        }
+        return registros;
+    }
+
+    private static Set<Medicamento> porContains(List<Medicamento> registros, String patron) {
+        String buscado = IndicePrefijos.normalizar(patron);
+        Set<Medicamento> resultado = new HashSet<>();
+        for (Medicamento med : registros) {
+            if (IndicePrefijos.normalizar(med.getNombre()).contains(buscado)) {
+                resultado.add(med);
+            }
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,87 @@
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * bajas y modificaciones en tanda del modelo de la tabla: una sola pasada y un solo evento
+ */
+class ModeloTablaMedicamentosTest {
+
+    @Test
+    void bajasSalteadasDisparanUnSoloCambioGeneral() {
+        ModeloTablaMedicamentos modelo = new ModeloTablaMedicamentos();
+        modelo.agregar(medicamentos(1, 5000));
+        List<TableModelEvent> eventos = new ArrayList<>();
+        modelo.addTableModelListener(eventos::add);
+
+        List<Integer> eliminados = new ArrayList<>();
+        for (int id = 1; id <= 5000; id += 3) {
+            eliminados.add(id);
+        }
+        eliminados.add(99_999);   // ausente: se ignora
+        modelo.eliminar(eliminados);
+
+        assertEquals(1, eventos.size());
+        assertEquals(TableModelEvent.UPDATE, eventos.get(0).getType());
+        assertEquals(Integer.MAX_VALUE, eventos.get(0).getLastRow());   // fireTableDataChanged
+        assertEquals(5000 - 1667, modelo.getRowCount());
+        for (int fila = 0; fila < modelo.getRowCount(); fila++) {
+            int id = modelo.getMedicamento(fila).getId();
+            assertNotEquals(1, id % 3, "fila " + fila);
+            assertTrue(modelo.contiene(id));
+        }
+        assertFalse(modelo.contiene(1));
+    }
+
+    @Test
+    void bajasContiguasDisparanUnBorradoDelTramo() {
+        ModeloTablaMedicamentos modelo = new ModeloTablaMedicamentos();
+        modelo.agregar(medicamentos(1, 100));
+        List<TableModelEvent> eventos = new ArrayList<>();
+        modelo.addTableModelListener(eventos::add);
+
+        modelo.eliminar(Arrays.asList(11, 12, 13, 14));
+
+        assertEquals(1, eventos.size());
+        assertEquals(TableModelEvent.DELETE, eventos.get(0).getType());
+        assertEquals(10, eventos.get(0).getFirstRow());
+        assertEquals(13, eventos.get(0).getLastRow());
+        assertEquals(96, modelo.getRowCount());
+        assertEquals(15, modelo.getMedicamento(10).getId());
+        assertTrue(modelo.buscarPorPrefijo("medicamento11").isEmpty());
+    }
+
+    @Test
+    void modificacionesDisparanUnaActualizacionDelTramo() {
+        ModeloTablaMedicamentos modelo = new ModeloTablaMedicamentos();
+        modelo.agregar(medicamentos(1, 100));
+        List<TableModelEvent> eventos = new ArrayList<>();
+        modelo.addTableModelListener(eventos::add);
+
+        Medicamento ausente = new Medicamento(500, "Ausente", "Analgésico", 1, "Cofarma",
+                Sucursales.lista(Sucursales.PRINCIPAL), 1_600_000_000_000L);
+        modelo.reemplazar(Arrays.asList(modelo.getMedicamento(29).conCantidad(999),
+                modelo.getMedicamento(19).conCantidad(998), ausente));
+
+        assertEquals(1, eventos.size());
+        assertEquals(TableModelEvent.UPDATE, eventos.get(0).getType());
+        assertEquals(19, eventos.get(0).getFirstRow());
+        assertEquals(29, eventos.get(0).getLastRow());
+        assertEquals(998, modelo.getValueAt(19, 2));
+        assertEquals(999, modelo.getValueAt(29, 2));
+        assertEquals(100, modelo.getRowCount());
+        assertFalse(modelo.contiene(500));
+    }
+
+    private static List<Medicamento> medicamentos(int desde, int hasta) {
+        List<Medicamento> lista = new ArrayList<>();
+        for (int id = desde; id <= hasta; id++) {
+            lista.add(new Medicamento(id, "Medicamento" + id, "Analgésico", id % 50, "Cofarma",
+                    Sucursales.lista(Sucursales.PRINCIPAL), 1_600_000_000_000L + id * 1000L));
+        }
+        return lista;
+    }
+}
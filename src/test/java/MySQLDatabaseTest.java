@@ -0,0 +1,31 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * partes de MySQLDatabase que no necesitan servidor
+ */
+class MySQLDatabaseTest {
+
+    @Test
+    void usaFullTextSiTodasLasPalabrasFormanUnNgram() {
+        assertTrue(MySQLDatabase.admiteFullText("vitamina", 2));
+        assertTrue(MySQLDatabase.admiteFullText("vitamina b12", 2));
+        assertTrue(MySQLDatabase.admiteFullText("  acido  folico ", 2));
+    }
+
+    @Test
+    void caeALikeConUnaPalabraMasCortaQueElNgram() {
+        assertFalse(MySQLDatabase.admiteFullText("vitamina b", 2));
+        assertFalse(MySQLDatabase.admiteFullText("b", 2));
+        assertFalse(MySQLDatabase.admiteFullText("vitamina b-12", 3));   // el guion también corta
+        assertFalse(MySQLDatabase.admiteFullText("ab", 3));
+    }
+
+    @Test
+    void caeALikeConComillasOSinPalabras() {
+        assertFalse(MySQLDatabase.admiteFullText("\"aspirina\"", 2));
+        assertFalse(MySQLDatabase.admiteFullText("   ", 2));
+        assertFalse(MySQLDatabase.admiteFullText("--", 2));
+    }
+}
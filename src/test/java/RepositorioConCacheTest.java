@@ -0,0 +1,215 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * revalidación de la cache contra el cursor de cambios, con un almacenamiento falso en memoria
+ * (otra instancia escribiendo = el falso avanza su cursor sin pasar por el decorador)
+ */
+class RepositorioConCacheTest {
+
+    @Test
+    void unCambioDeOtraInstanciaVaciaLaCacheAlComprobar() {
+        AlmacenFalso almacen = new AlmacenFalso();
+        RepositorioConCache cache = new RepositorioConCache(almacen, 1000, 0);
+        cache.obtenerCursorCambios();
+
+        assertEquals(3, cache.obtenerTotalMedicamentos());
+        assertEquals(3, cache.obtenerTotalMedicamentos());
+        assertEquals(1, almacen.lecturasTotal);
+
+        almacen.altaExterna();
+        assertEquals(4, cache.obtenerTotalMedicamentos());
+        assertEquals(2, almacen.lecturasTotal);
+    }
+
+    @Test
+    void losNombresTambienSeComprueban() {
+        AlmacenFalso almacen = new AlmacenFalso();
+        RepositorioConCache cache = new RepositorioConCache(almacen, 1000, 0);
+        cache.obtenerCursorCambios();
+
+        assertEquals(3, cache.obtenerNombresRegistrados().size());
+        almacen.altaExterna();
+        assertEquals(4, cache.obtenerNombresRegistrados().size());
+    }
+
+    @Test
+    void dentroDeLaEsperaLosAciertosNoConsultanElAlmacenamiento() {
+        AlmacenFalso almacen = new AlmacenFalso();
+        RepositorioConCache cache = new RepositorioConCache(almacen, 1000, 60_000);
+        cache.obtenerCursorCambios();
+
+        for (int i = 0; i < 100; i++) {
+            cache.obtenerTotalMedicamentos();
+            cache.buscarPorNombre("med");
+        }
+        assertEquals(0, almacen.consultasCambios);
+        assertEquals(1, almacen.lecturasTotal);
+        assertEquals(1, almacen.busquedas);
+    }
+
+    @Test
+    void sinEsperaCadaAciertoConsultaLosCambios() {
+        AlmacenFalso almacen = new AlmacenFalso();
+        RepositorioConCache cache = new RepositorioConCache(almacen, 1000, 0);
+        cache.obtenerCursorCambios();
+
+        for (int i = 0; i < 5; i++) {
+            cache.obtenerTotalMedicamentos();
+        }
+        assertEquals(4, almacen.consultasCambios);   // el primero es un fallo, no se comprueba
+        assertEquals(1, almacen.lecturasTotal);
+    }
+
+    @Test
+    void unRecorridoDesdeLaCacheNoRetieneElCandado() throws Exception {
+        AlmacenFalso almacen = new AlmacenFalso();
+        RepositorioConCache cache = new RepositorioConCache(almacen, 1000, 60_000);
+        cache.obtenerCursorCambios();
+        cache.recorrerMedicamentosFiltrados("Todos los tipos", "Todos los distribuidores", Sucursales.TODAS, med -> { });
+
+        ExecutorService otroHilo = Executors.newSingleThreadExecutor();
+        try {
+            List<Integer> totales = new ArrayList<>();
+            int entregadas = cache.recorrerMedicamentosFiltrados("Todos los tipos", "Todos los distribuidores",
+                    Sucursales.TODAS, med -> {
+                        // con el candado tomado durante el recorrido esta consulta quedaría esperando
+                        try {
+                            totales.add(otroHilo.submit(cache::obtenerTotalMedicamentos).get(5, TimeUnit.SECONDS));
+                        } catch (Exception e) {
+                            throw new AssertionError("la cache quedó bloqueada durante el recorrido", e);
+                        }
+                    });
+            assertEquals(3, entregadas);
+            assertEquals(Arrays.asList(3, 3, 3), totales);
+            assertEquals(1, almacen.recorridos);
+        } finally {
+            otroHilo.shutdownNow();
+        }
+    }
+
+    // almacenamiento en memoria que cuenta las lecturas que le llegan
+    private static final class AlmacenFalso implements RepositorioMedicamentos {
+        final List<Medicamento> registros = new ArrayList<>();
+        long marca = 1;
+        int lecturasTotal;
+        int busquedas;
+        int recorridos;
+        int consultasCambios;
+
+        AlmacenFalso() {
+            for (int i = 0; i < 3; i++) {
+                agregarRegistro();
+            }
+        }
+
+        void altaExterna() {
+            agregarRegistro();
+            marca++;
+        }
+
+        private void agregarRegistro() {
+            int id = registros.size() + 1;
+            registros.add(new Medicamento(id, "Medicamento" + id, "Analgésico", id, "Cofarma",
+                    Sucursales.lista(Sucursales.PRINCIPAL), 1_600_000_000_000L + id * 1000L));
+        }
+
+        @Override
+        public int obtenerTotalMedicamentos() {
+            lecturasTotal++;
+            return registros.size();
+        }
+
+        @Override
+        public Map<String, String> obtenerNombresRegistrados() {
+            Map<String, String> nombres = new LinkedHashMap<>();
+            for (Medicamento med : registros) {
+                nombres.put(med.getNombre(), med.getTipo());
+            }
+            return nombres;
+        }
+
+        @Override
+        public List<Medicamento> buscarPorNombre(String patron) {
+            busquedas++;
+            return new ArrayList<>(registros);
+        }
+
+        @Override
+        public List<Medicamento> obtenerMedicamentosFiltrados(String tipo, String distribuidor, String sucursal) {
+            return new ArrayList<>(registros);
+        }
+
+        @Override
+        public int recorrerMedicamentosFiltrados(String tipo, String distribuidor, String sucursal,
+                                                 Consumer<Medicamento> consumidor) {
+            recorridos++;
+            registros.forEach(consumidor);
+            return registros.size();
+        }
+
+        @Override
+        public CursorCambios obtenerCursorCambios() {
+            return new CursorCambios(marca, marca, registros.size());
+        }
+
+        @Override
+        public CambiosRegistro obtenerCambiosDesde(CursorCambios desde) {
+            consultasCambios++;
+            List<Medicamento> altas = desde.getUltimaAlta() < marca
+                    ? Collections.singletonList(registros.get(registros.size() - 1))
+                    : Collections.emptyList();
+            return new CambiosRegistro(altas, Collections.emptyList(), Collections.emptyList(), obtenerCursorCambios());
+        }
+
+        @Override
+        public int agregarMedicamento(String nombre, String tipo, int cantidad, String distribuidor, List<String> sucursales) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Integer> agregarMedicamentos(List<Medicamento> medicamentos) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean eliminarMedicamentoPorId(int id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean actualizarCantidad(int id, int nuevaCantidad) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Medicamento> obtenerTodosLosMedicamentos() {
+            return new ArrayList<>(registros);
+        }
+
+        @Override
+        public int recorrerMedicamentos(Consumer<Medicamento> consumidor) {
+            registros.forEach(consumidor);
+            return registros.size();
+        }
+
+        @Override
+        public List<Medicamento> obtenerPagina(CursorPagina despuesDe, int tamano) {
+            return new ArrayList<>(registros);
+        }
+
+        @Override
+        public EstadisticasInventario obtenerEstadisticas() {
+            return new EstadisticasInventario();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}